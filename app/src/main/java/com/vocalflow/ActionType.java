@@ -0,0 +1,37 @@
+package com.vocalflow;
+
+/**
+ * Kinds of interaction the tracker records, stored as a single byte per event.
+ */
+public enum ActionType {
+    CLICK("click"),
+    INPUT("input");
+
+    private static final ActionType[] VALUES = values();
+    private final String wireName;
+
+    ActionType(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    byte code() {
+        return (byte) ordinal();
+    }
+
+    static ActionType fromCode(byte code) {
+        return VALUES[code];
+    }
+
+    public static ActionType fromWireName(String wireName) {
+        for (ActionType type : VALUES) {
+            if (type.wireName.equalsIgnoreCase(wireName)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -4,46 +4,59 @@ import android.app.Activity;
 import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.res.Resources;
 import android.os.Bundle;
 import android.text.Editable;
+import android.text.InputType;
 import android.text.TextWatcher;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.MotionEvent;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.cardview.widget.CardView;
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import java.lang.reflect.Field;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.TimeZone;
 
 public class AutoInteractionTracker {
     private static final String TAG = "AutoInteractionTracker";
+    private static final int DEFAULT_BUFFER_CAPACITY = 100;
+    private static final long DEFAULT_INPUT_DEBOUNCE_MS = 1000;
+    // Text with this many digits in a row, spaces and dashes aside, is not recorded
+    private static final int MAX_RECORDED_DIGIT_RUN = 6;
     private static final AutoInteractionTracker instance = new AutoInteractionTracker();
-    private final List<InteractionEvent> eventBuffer = new ArrayList<>();
+    private volatile InteractionEventBuffer eventBuffer = new InteractionEventBuffer(DEFAULT_BUFFER_CAPACITY);
+    // View ID -> resource name, filled in on the main thread as views are touched
+    private final SparseArray<String> resourceNames = new SparseArray<>();
+    private volatile long inputDebounceMs = DEFAULT_INPUT_DEBOUNCE_MS;
 
     public static AutoInteractionTracker getInstance() {
         return instance;
     }
 
     public void init(Application app) {
+        init(app, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Sets how long a text field has to be idle before its input is recorded.
+     * Input is also recorded as soon as the field loses focus or another view is clicked.
+     */
+    public void setInputDebounceMs(long inputDebounceMs) {
+        this.inputDebounceMs = inputDebounceMs;
+    }
+
+    public void init(Application app, int bufferCapacity) {
         Log.d(TAG, "Initializing AutoInteractionTracker");
+        if (bufferCapacity != eventBuffer.capacity()) {
+            eventBuffer = new InteractionEventBuffer(bufferCapacity);
+        }
         app.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
             @Override
             public void onActivityResumed(Activity activity) {
@@ -53,16 +66,19 @@ public class AutoInteractionTracker {
             }
 
             @Override
-            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
-                // Also attach listeners when activity is created
-                String screenName = activity.getClass().getSimpleName();
-                Log.d(TAG, "Activity created: " + screenName);
-                attachListeners(activity, screenName);
+            public void onActivityPaused(Activity activity) {
+                // Record whatever is still being typed before the screen goes away
+                View rootView = activity.findViewById(android.R.id.content);
+                Object instrumentation = rootView != null ? rootView.getTag(R.id.already_hooked_hierarchy) : null;
+                if (instrumentation instanceof ScreenInstrumentation) {
+                    ((ScreenInstrumentation) instrumentation).flushInputs();
+                }
             }
 
-            // Other lifecycle methods can remain empty
+            // Other lifecycle methods can remain empty. The content view is not set
+            // yet when onActivityCreated runs, so there is nothing to attach to there.
+            @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {}
             @Override public void onActivityStarted(Activity activity) {}
-            @Override public void onActivityPaused(Activity activity) {}
             @Override public void onActivityStopped(Activity activity) {}
             @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
             @Override public void onActivityDestroyed(Activity activity) {}
@@ -71,104 +87,271 @@ public class AutoInteractionTracker {
 
     private void attachListeners(Activity activity, String screenName) {
         View rootView = activity.findViewById(android.R.id.content);
-        if (rootView instanceof ViewGroup) {
-            Log.d(TAG, "Attaching listeners to views in: " + screenName);
-            attachToViews((ViewGroup) rootView, screenName);
-        } else {
+        if (!(rootView instanceof ViewGroup)) {
             Log.w(TAG, "Root view is not a ViewGroup in: " + screenName);
+            return;
+        }
+        if (rootView.getTag(R.id.already_hooked_hierarchy) != null) {
+            return;
         }
+        Log.d(TAG, "Attaching listeners to views in: " + screenName);
+        ScreenInstrumentation instrumentation = new ScreenInstrumentation(screenName);
+        rootView.setTag(R.id.already_hooked_hierarchy, instrumentation);
+        // Views added later are picked up on the next layout pass, which adding
+        // a view always causes. No hierarchy listeners are set, so the app's own stay in place.
+        rootView.getViewTreeObserver().addOnGlobalFocusChangeListener(instrumentation);
+        rootView.getViewTreeObserver().addOnGlobalLayoutListener(() -> instrumentation.attachToViews((ViewGroup) rootView));
+        instrumentation.attachToViews((ViewGroup) rootView);
     }
 
-    private void attachToViews(ViewGroup root, String screenName) {
-        // First attach to the ViewGroup itself if it's clickable
-        attachToView(root, screenName);
-        
-        // Then recursively attach to all children
-        for (int i = 0; i < root.getChildCount(); i++) {
-            View child = root.getChildAt(i);
-            if (child instanceof ViewGroup) {
-                attachToViews((ViewGroup) child, screenName);
-            } else {
-                attachToView(child, screenName);
+    /**
+     * Resolves a view ID to its resource name, caching the result per ID.
+     * Only called on the main thread.
+     */
+    private String getResourceName(View view) {
+        int id = view.getId();
+        if (id == View.NO_ID) {
+            return "NO_ID";
+        }
+        String name = resourceNames.get(id);
+        if (name == null) {
+            try {
+                name = view.getResources().getResourceName(id);
+            } catch (Resources.NotFoundException e) {
+                Log.w(TAG, "Failed to get resource name for view ID: " + e.getMessage());
+                name = "id/" + id;
             }
+            resourceNames.put(id, name);
         }
+        return name;
     }
 
-    private void attachToView(View view, String screenName) {
-        // Check if view should be tracked
-        boolean shouldTrack = view.isClickable() || 
-                            view instanceof Button || 
-                            view instanceof CardView || 
-                            view instanceof ImageView || 
-                            view instanceof TextView;
-
-        if (shouldTrack && view.getTag(R.id.already_hooked) == null) {
-            // Create a wrapper that will log and then allow the original click to proceed
-            view.setOnTouchListener((v, event) -> {
-                // Only handle click events
-                if (event.getAction() == MotionEvent.ACTION_UP) {
-                    String viewName = v.getClass().getSimpleName();
-                    String viewId = "NO_ID";
-                    try {
-                        if (v.getId() != View.NO_ID) {
-                            viewId = v.getResources().getResourceName(v.getId());
-                        }
-                    } catch (Exception e) {
-                        Log.w(TAG, "Failed to get resource name for view ID: " + e.getMessage());
-                        viewId = "id/" + v.getId();
-                    }
-                    
-                    Log.d(TAG, String.format("Click detected - Screen: %s, View: %s, ID: %s", 
-                        screenName, viewName, viewId));
-                    
-                    logEvent(new InteractionEvent(System.currentTimeMillis(), v.getId(), viewId, screenName, "click"));
+    /**
+     * Listeners shared by every view on one screen.
+     */
+    private class ScreenInstrumentation implements View.OnTouchListener, View.OnAttachStateChangeListener,
+            ViewTreeObserver.OnGlobalFocusChangeListener {
+        private final String screenName;
+        private final List<PendingInput> inputs = new ArrayList<>();
+        // Gesture and view of the last recorded click, so one tap is never recorded twice
+        private long lastClickDownTime = -1;
+        private int lastClickViewId = View.NO_ID;
+
+        ScreenInstrumentation(String screenName) {
+            this.screenName = screenName;
+        }
+
+        /**
+         * Hooks every view in the tree that is not hooked yet. Views already
+         * hooked only cost a tag lookup, so this is cheap to repeat on each layout.
+         */
+        void attachToViews(ViewGroup root) {
+            // First attach to the ViewGroup itself if it's clickable
+            attachToView(root);
+
+            // Then recursively attach to all children
+            for (int i = 0; i < root.getChildCount(); i++) {
+                attach(root.getChildAt(i));
+            }
+        }
+
+        private void attach(View view) {
+            if (view instanceof ViewGroup) {
+                attachToViews((ViewGroup) view);
+            } else {
+                attachToView(view);
+            }
+        }
+
+        private void attachToView(View view) {
+            // Check if view should be tracked
+            boolean shouldTrack = view.isClickable() ||
+                                view instanceof Button ||
+                                view instanceof CardView ||
+                                view instanceof ImageView ||
+                                view instanceof TextView;
+
+            if (shouldTrack && view.getTag(R.id.already_hooked) == null) {
+                view.setOnTouchListener(this);
+                view.setTag(R.id.already_hooked, true);
+            }
+
+            if (view instanceof EditText && view.getTag(R.id.already_hooked_input) == null) {
+                PendingInput input = new PendingInput((EditText) view, screenName);
+                ((EditText) view).addTextChangedListener(input);
+                view.addOnAttachStateChangeListener(this);
+                inputs.add(input);
+                view.setTag(R.id.already_hooked_input, input);
+            }
+        }
+
+        /**
+         * Records every field that has been edited since its last input event.
+         */
+        void flushInputs() {
+            for (int i = 0; i < inputs.size(); i++) {
+                inputs.get(i).flush();
+            }
+        }
+
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            // Only handle click events
+            if (event.getAction() == MotionEvent.ACTION_UP) {
+                if (event.getDownTime() == lastClickDownTime && v.getId() == lastClickViewId) {
+                    return false;
                 }
-                // Return false to allow the original click to proceed
-                return false;
-            });
-            view.setTag(R.id.already_hooked, true);
+                lastClickDownTime = event.getDownTime();
+                lastClickViewId = v.getId();
+                // Text typed before this click has to be recorded ahead of it
+                flushInputs();
+                String viewId = getResourceName(v);
+                Log.d(TAG, "Click detected - Screen: " + screenName + ", ID: " + viewId);
+                logEvent(System.currentTimeMillis(), v.getId(), viewId, screenName, ActionType.CLICK);
+            }
+            // Return false to allow the original click to proceed
+            return false;
         }
 
-        if (view instanceof EditText && view.getTag(R.id.already_hooked_input) == null) {
-            ((EditText) view).addTextChangedListener(new TextWatcher() {
-                @Override public void afterTextChanged(Editable s) {
-                    String viewName = view.getClass().getSimpleName();
-                    String viewId = "NO_ID";
-                    try {
-                        if (view.getId() != View.NO_ID) {
-                            viewId = view.getResources().getResourceName(view.getId());
-                        }
-                    } catch (Exception e) {
-                        Log.w(TAG, "Failed to get resource name for view ID: " + e.getMessage());
-                        viewId = "id/" + view.getId();
-                    }
-                    
-                    Log.d(TAG, String.format("Text input detected - Screen: %s, View: %s, ID: %s, Text: %s", 
-                        screenName, viewName, viewId, s.toString()));
-                    
-                    logEvent(new InteractionEvent(System.currentTimeMillis(), view.getId(), viewId, screenName, "input"));
+        @Override
+        public void onViewAttachedToWindow(View view) {}
+
+        /**
+         * Stops tracking a text field that has left the screen, recording what was
+         * typed into it first. It is hooked again if it comes back.
+         */
+        @Override
+        public void onViewDetachedFromWindow(View view) {
+            view.removeOnAttachStateChangeListener(this);
+            Object tag = view.getTag(R.id.already_hooked_input);
+            if (tag instanceof PendingInput) {
+                PendingInput input = (PendingInput) tag;
+                input.flush();
+                ((EditText) view).removeTextChangedListener(input);
+                inputs.remove(input);
+                view.setTag(R.id.already_hooked_input, null);
+            }
+        }
+
+        @Override
+        public void onGlobalFocusChanged(View oldFocus, View newFocus) {
+            if (oldFocus != null) {
+                Object input = oldFocus.getTag(R.id.already_hooked_input);
+                if (input instanceof PendingInput) {
+                    ((PendingInput) input).flush();
                 }
+            }
+        }
+    }
+
+    /**
+     * Coalesces the edits to one text field into a single input event.
+     *
+     * Keystrokes only note the time and re-arm the debounce; the event, with the
+     * field's final text, is logged once the field goes idle, loses focus, or
+     * another view is clicked.
+     */
+    private class PendingInput implements TextWatcher, Runnable {
+        private final EditText view;
+        private final String screenName;
+        private boolean dirty = false;
+        private long lastEditTime;
+
+        PendingInput(EditText view, String screenName) {
+            this.view = view;
+            this.screenName = screenName;
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            dirty = true;
+            lastEditTime = System.currentTimeMillis();
+            view.removeCallbacks(this);
+            view.postDelayed(this, inputDebounceMs);
+        }
+
+        @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+        @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+        @Override
+        public void run() {
+            flush();
+        }
 
-                @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-                @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
-            });
-            view.setTag(R.id.already_hooked_input, true);
+        void flush() {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            view.removeCallbacks(this);
+            String viewId = getResourceName(view);
+            // Never keep passwords, card or account numbers, amounts or phone numbers
+            String text = view.getText().toString();
+            String value = isSensitive(view, text) ? null : text;
+            Log.d(TAG, "Text input detected - Screen: " + screenName + ", ID: " + viewId);
+            logEvent(lastEditTime, view.getId(), viewId, screenName, ActionType.INPUT, value);
+        }
+    }
+
+    /**
+     * True if the field's text must not be recorded: numeric and phone fields
+     * (amounts, account and card numbers, PINs), fields whose autofill hints
+     * mark them as passwords, card or phone numbers, and any text with a long
+     * run of digits in it, such as a card number typed into a plain text field.
+     * The input event is still recorded, without its value.
+     */
+    private static boolean isSensitive(EditText view, String text) {
+        int inputType = view.getInputType();
+        int inputClass = inputType & InputType.TYPE_MASK_CLASS;
+        if (inputClass == InputType.TYPE_CLASS_NUMBER || inputClass == InputType.TYPE_CLASS_PHONE || isPassword(inputType)) {
+            return true;
+        }
+        String[] hints = view.getAutofillHints();
+        if (hints != null) {
+            for (String hint : hints) {
+                if (hint.startsWith("creditCard") || hint.equals(View.AUTOFILL_HINT_PHONE)
+                        || hint.equals(View.AUTOFILL_HINT_PASSWORD)) {
+                    return true;
+                }
+            }
+        }
+        int digitRun = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                if (++digitRun >= MAX_RECORDED_DIGIT_RUN) {
+                    return true;
+                }
+            } else if (c != ' ' && c != '-') {
+                digitRun = 0;
+            }
         }
+        return false;
+    }
+
+    private static boolean isPassword(int inputType) {
+        int variation = inputType & (InputType.TYPE_MASK_CLASS | InputType.TYPE_MASK_VARIATION);
+        return variation == (InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD)
+            || variation == (InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_WEB_PASSWORD)
+            || variation == (InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_VISIBLE_PASSWORD)
+            || variation == (InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_VARIATION_PASSWORD);
+    }
+
+    private void logEvent(long timestamp, int viewId, String viewResourceName, String screenName, ActionType actionType) {
+        logEvent(timestamp, viewId, viewResourceName, screenName, actionType, null);
     }
 
-    private void logEvent(InteractionEvent event) {
-        eventBuffer.add(event);
-        Log.d(TAG, "Event logged: " + event.toString());
-        if (eventBuffer.size() > 100) {
-            InteractionEvent removed = eventBuffer.remove(0);
-            Log.d(TAG, "Buffer full, removed oldest event: " + removed.toString());
+    private void logEvent(long timestamp, int viewId, String viewResourceName, String screenName, ActionType actionType, String value) {
+        boolean evicted = eventBuffer.add(timestamp, viewId, viewResourceName, screenName, actionType, value);
+        Log.d(TAG, "Event logged: " + actionType.getWireName() + " on " + viewResourceName + " in " + screenName);
+        if (evicted) {
+            Log.d(TAG, "Buffer full, evicted oldest event");
         }
         Log.d(TAG, "Current buffer size: " + eventBuffer.size()); 
-        tryRelayIntent(event);
+        tryRelayIntent(screenName);
     }
 
-    private void tryRelayIntent(InteractionEvent event) {
-        String screenName = event.getScreenName();
+    private void tryRelayIntent(String screenName) {
         if(!screenName.equals("PaymentProcessingActivity")) return;
         Activity currentActivity = getCurrentActivity();
         if (currentActivity != null) {
@@ -179,9 +362,10 @@ public class AutoInteractionTracker {
             
             String intentText = String.format("Your %s Bill of %s has been successfully paid through %s.", billType, amount, paymentMethod);
             Log.d(TAG, "Intent Text: " + intentText);
+            List<InteractionEvent> buffered = eventBuffer.snapshot();
             List<InteractionEvent> events = new ArrayList<>();
-            for(int i=eventBuffer.size()-2; i>=0; i--) {
-                InteractionEvent e = eventBuffer.get(i);
+            for(int i=buffered.size()-2; i>=0; i--) {
+                InteractionEvent e = buffered.get(i);
                 events.add(e);
                 if(e.getScreenName().equals("MainActivity")) break;
             }
@@ -192,94 +376,17 @@ public class AutoInteractionTracker {
     }
 
     public void relayIntent(String intentText, List<InteractionEvent> events) {
-        Activity currentActivity = getCurrentActivity();
-        if (currentActivity == null) {
-            Log.e(TAG, "No current activity found for API call");
-            return;
-        }
-
-        RequestQueue queue = Volley.newRequestQueue(currentActivity);
-        String url = "https://web-production-9ea4.up.railway.app/api/record_intent/";
-
-        try {
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("intent_text", intentText);
-
-            JSONArray eventsArray = new JSONArray();
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
-            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-            for (InteractionEvent event : events) {
-                JSONObject eventJson = new JSONObject();
-                eventJson.put("event_type", event.getActionType().toLowerCase());
-                eventJson.put("timestamp", dateFormat.format(event.getTimestamp()));
-                eventJson.put("view_id", event.getViewId());
-                eventJson.put("view_resource_name", event.getViewResourceName());
-                eventJson.put("screen_name", event.getScreenName());
-                eventJson.put("action_type", event.getActionType());
-                eventsArray.put(eventJson);
-            }
-
-            requestBody.put("interaction_events", eventsArray);
-
-            JsonObjectRequest jsonObjectRequest = new JsonObjectRequest(
-                Request.Method.POST,
-                url,
-                requestBody,
-                new Response.Listener<JSONObject>() {
-                    @Override
-                    public void onResponse(JSONObject response) {
-                        Log.d(TAG, "API Response: " + response.toString());
-                    }
-                },
-                new Response.ErrorListener() {
-                    @Override
-                    public void onErrorResponse(VolleyError error) {
-                        Log.e(TAG, "API Error: " + error.getMessage());
-                        if (error.networkResponse != null) {
-                            Log.e(TAG, "Status code: " + error.networkResponse.statusCode);
-                            Log.e(TAG, "Response data: " + new String(error.networkResponse.data));
-                        }
-                    }
-                }
-            );
-
-            queue.add(jsonObjectRequest);
-            Log.d(TAG, "API request sent for intent: " + intentText);
-
-        } catch (JSONException e) {
-            Log.e(TAG, "Error creating JSON request: " + e.getMessage());
-        }
+        IntentUploader.getInstance().enqueue(intentText, events);
     }
 
     public List<InteractionEvent> getEvents() {
-        Log.d(TAG, "Retrieving " + eventBuffer.size() + " events");
-        List<InteractionEvent> events = new ArrayList<>(eventBuffer);
+        List<InteractionEvent> events = eventBuffer.snapshot();
+        Log.d(TAG, "Retrieving " + events.size() + " events");
         Collections.reverse(events);
         return events;
     }
 
     private Activity getCurrentActivity() {
-        try {
-            Class activityThreadClass = Class.forName("android.app.ActivityThread");
-            Object activityThread = activityThreadClass.getMethod("currentActivityThread").invoke(null);
-            Field activitiesField = activityThreadClass.getDeclaredField("mActivities");
-            activitiesField.setAccessible(true);
-            Object activities = activitiesField.get(activityThread);
-            
-            for (Object activityRecord : ((android.util.ArrayMap) activities).values()) {
-                Class activityRecordClass = activityRecord.getClass();
-                Field pausedField = activityRecordClass.getDeclaredField("paused");
-                pausedField.setAccessible(true);
-                if (!pausedField.getBoolean(activityRecord)) {
-                    Field activityField = activityRecordClass.getDeclaredField("activity");
-                    activityField.setAccessible(true);
-                    return (Activity) activityField.get(activityRecord);
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting current activity", e);
-        }
-        return null;
+        return CurrentActivityHolder.getInstance().getActivity();
     }
 } 
\ No newline at end of file
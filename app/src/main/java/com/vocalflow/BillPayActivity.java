@@ -9,13 +9,12 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.cardview.widget.CardView;
-import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 import org.json.JSONObject;
+import java.io.IOException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
 
 public class BillPayActivity extends AppCompatActivity {
     private static final String API_URL = "https://web-production-9ea4.up.railway.app/api/get_bills/?user_id=abc";
@@ -78,34 +77,45 @@ public class BillPayActivity extends AppCompatActivity {
     }
 
     private void fetchBillAmounts() {
-        RequestQueue queue = Volley.newRequestQueue(this);
-        JsonObjectRequest jsonObjectRequest = new JsonObjectRequest(
-            Request.Method.GET,
-            API_URL,
-            null,
-            new Response.Listener<JSONObject>() {
-                @Override
-                public void onResponse(JSONObject response) {
+        Request request = new Request.Builder()
+            .url(API_URL)
+            .get()
+            .build();
+
+        VocalFlowApplication.getNetworkClient().getHttpClient().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                runOnUiThread(() ->
+                    Toast.makeText(BillPayActivity.this, "Error fetching bill amounts", Toast.LENGTH_SHORT).show());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                String body;
+                try {
+                    if (!response.isSuccessful()) {
+                        onFailure(call, new IOException("Unexpected response code: " + response.code()));
+                        return;
+                    }
+                    body = response.body().string();
+                } finally {
+                    response.close();
+                }
+
+                runOnUiThread(() -> {
                     try {
+                        JSONObject json = new JSONObject(body);
                         // Update bill amounts from API response
-                        electricityAmount.setText(String.format("₹%.2f", Double.parseDouble(response.getString("electricity_bill"))));
-                        waterAmount.setText(String.format("₹%.2f", Double.parseDouble(response.getString("water_bill"))));
-                        internetAmount.setText(String.format("₹%.2f", Double.parseDouble(response.getString("internet_bill"))));
-                        phoneAmount.setText(String.format("₹%.2f", Double.parseDouble(response.getString("phone_bill"))));
+                        electricityAmount.setText(String.format("₹%.2f", Double.parseDouble(json.getString("electricity_bill"))));
+                        waterAmount.setText(String.format("₹%.2f", Double.parseDouble(json.getString("water_bill"))));
+                        internetAmount.setText(String.format("₹%.2f", Double.parseDouble(json.getString("internet_bill"))));
+                        phoneAmount.setText(String.format("₹%.2f", Double.parseDouble(json.getString("phone_bill"))));
                     } catch (Exception e) {
                         Toast.makeText(BillPayActivity.this, "Error parsing bill amounts", Toast.LENGTH_SHORT).show();
                     }
-                }
-            },
-            new Response.ErrorListener() {
-                @Override
-                public void onErrorResponse(VolleyError error) {
-                    Toast.makeText(BillPayActivity.this, "Error fetching bill amounts", Toast.LENGTH_SHORT).show();
-                }
+                });
             }
-        );
-
-        queue.add(jsonObjectRequest);
+        });
     }
 
     private void navigateToPaymentMethods(String billType, double amount) {
@@ -4,9 +4,29 @@ import android.app.Activity;
 import android.app.Application;
 import android.os.Bundle;
 
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks the resumed Activity for the whole app.
+ *
+ * The Activity is held weakly, so the holder never keeps a finished screen
+ * alive, and published through a volatile field, so any thread can read it
+ * without locking. Listeners are told on the main thread whenever it changes.
+ */
 public class CurrentActivityHolder {
-    private static CurrentActivityHolder instance;
-    private Activity currentActivity;
+    private static volatile CurrentActivityHolder instance;
+    private static final WeakReference<Activity> NONE = new WeakReference<>(null);
+
+    /**
+     * Notified on the main thread when an Activity resumes, and with null when it pauses.
+     */
+    public interface Listener {
+        void onCurrentActivityChanged(Activity activity);
+    }
+
+    private volatile WeakReference<Activity> currentActivity = NONE;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
 
     private CurrentActivityHolder(Application app) {
         app.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
@@ -18,13 +38,13 @@ public class CurrentActivityHolder {
 
             @Override
             public void onActivityResumed(Activity activity) {
-                currentActivity = activity;
+                setActivity(new WeakReference<>(activity), activity);
             }
 
             @Override
             public void onActivityPaused(Activity activity) {
-                if (currentActivity == activity) {
-                    currentActivity = null;
+                if (currentActivity.get() == activity) {
+                    setActivity(NONE, null);
                 }
             }
 
@@ -39,20 +59,39 @@ public class CurrentActivityHolder {
         });
     }
 
-    public static void init(Application app) {
+    public static synchronized void init(Application app) {
         if (instance == null) {
             instance = new CurrentActivityHolder(app);
         }
     }
 
     public static CurrentActivityHolder getInstance() {
-        if (instance == null) {
+        CurrentActivityHolder holder = instance;
+        if (holder == null) {
             throw new IllegalStateException("CurrentActivityHolder not initialized. Call init() first.");
         }
-        return instance;
+        return holder;
     }
 
+    /**
+     * Returns the resumed Activity, or null if none is in the foreground.
+     */
     public Activity getActivity() {
-        return currentActivity;
+        return currentActivity.get();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void setActivity(WeakReference<Activity> ref, Activity activity) {
+        currentActivity = ref;
+        for (Listener listener : listeners) {
+            listener.onCurrentActivityChanged(activity);
+        }
     }
-} 
\ No newline at end of file
+}
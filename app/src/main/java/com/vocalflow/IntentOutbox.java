@@ -0,0 +1,224 @@
+package com.vocalflow;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of intents that have not been acknowledged by the server.
+ *
+ * Each record is length-prefixed and checksummed:
+ * {@code length:int | crc32:int | type:byte | id:long | payload}.
+ * An APPEND payload is {@code textLength:int | text | body}; an ACK has none.
+ * A torn record at the tail after a crash fails its checksum and is truncated on open.
+ *
+ * Not thread-safe: every call must come from the owner's executor thread, which
+ * is also used to batch fsyncs and run compaction.
+ */
+class IntentOutbox {
+    private static final String TAG = "IntentOutbox";
+    private static final byte TYPE_APPEND = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int FIXED_FIELDS_SIZE = 1 + 8;
+    private static final int SYNC_BATCH_SIZE = 16;
+    private static final long SYNC_DELAY_MS = 250;
+    private static final int COMPACT_THRESHOLD = 32;
+
+    private final File file;
+    private final ScheduledExecutorService executor;
+    private final Map<Long, Entry> live = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long nextId = 1;
+    private int unsyncedRecords = 0;
+    private int ackedSinceCompaction = 0;
+    private ScheduledFuture<?> scheduledSync;
+
+    static final class Entry {
+        final long id;
+        final String intentText;
+        final byte[] body;
+
+        Entry(long id, String intentText, byte[] body) {
+            this.id = id;
+            this.intentText = intentText;
+            this.body = body;
+        }
+    }
+
+    IntentOutbox(File file, ScheduledExecutorService executor) {
+        this.file = file;
+        this.executor = executor;
+    }
+
+    /**
+     * Opens the journal and returns the intents that were never acknowledged.
+     */
+    List<Entry> open() throws IOException {
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        long validLength = load();
+        if (validLength < channel.size()) {
+            Log.w(TAG, "Truncating torn journal tail at " + validLength + " of " + channel.size() + " bytes");
+            channel.truncate(validLength);
+            channel.force(false);
+        }
+        channel.position(validLength);
+        Log.d(TAG, "Opened outbox with " + live.size() + " pending intents");
+        return new ArrayList<>(live.values());
+    }
+
+    private long load() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long validLength = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < FIXED_FIELDS_SIZE || length > buffer.remaining()) {
+                break;
+            }
+            byte[] record = new byte[length];
+            buffer.get(record);
+            crc.reset();
+            crc.update(record, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            ByteBuffer fields = ByteBuffer.wrap(record);
+            byte type = fields.get();
+            long id = fields.getLong();
+            if (type == TYPE_APPEND) {
+                int textLength = fields.getInt();
+                String intentText = new String(record, fields.position(), textLength, StandardCharsets.UTF_8);
+                fields.position(fields.position() + textLength);
+                byte[] body = new byte[fields.remaining()];
+                fields.get(body);
+                live.put(id, new Entry(id, intentText, body));
+            } else if (type == TYPE_ACK) {
+                live.remove(id);
+                ackedSinceCompaction++;
+            }
+            nextId = Math.max(nextId, id + 1);
+            validLength = buffer.position();
+        }
+        return validLength;
+    }
+
+    /**
+     * Records a new pending intent. The write reaches the page cache immediately;
+     * the fsync is batched with neighbouring writes.
+     */
+    Entry append(String intentText, byte[] body) throws IOException {
+        Entry entry = new Entry(nextId++, intentText, body);
+        byte[] text = intentText.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(4 + text.length + body.length);
+        payload.putInt(text.length).put(text).put(body);
+        writeRecord(TYPE_APPEND, entry.id, payload.array());
+        live.put(entry.id, entry);
+        return entry;
+    }
+
+    /**
+     * Marks an intent as uploaded, compacting the journal once enough have been acknowledged.
+     */
+    void acknowledge(long id) throws IOException {
+        if (live.remove(id) == null) {
+            return;
+        }
+        ackedSinceCompaction++;
+        if (live.isEmpty() || ackedSinceCompaction >= COMPACT_THRESHOLD) {
+            compact();
+        } else {
+            writeRecord(TYPE_ACK, id, new byte[0]);
+        }
+    }
+
+    private void writeRecord(byte type, long id, byte[] payload) throws IOException {
+        int length = FIXED_FIELDS_SIZE + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+        record.putInt(length).putInt(0).put(type).putLong(id).put(payload);
+        crc.reset();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+
+        unsyncedRecords++;
+        if (unsyncedRecords >= SYNC_BATCH_SIZE) {
+            sync();
+        } else if (scheduledSync == null || scheduledSync.isDone()) {
+            scheduledSync = executor.schedule(() -> {
+                try {
+                    sync();
+                } catch (IOException e) {
+                    Log.e(TAG, "Error syncing outbox: " + e.getMessage());
+                }
+            }, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void sync() throws IOException {
+        if (scheduledSync != null) {
+            scheduledSync.cancel(false);
+            scheduledSync = null;
+        }
+        if (unsyncedRecords > 0) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the pending intents, replacing it atomically.
+     */
+    private void compact() throws IOException {
+        Log.d(TAG, "Compacting outbox: " + live.size() + " pending, " + ackedSinceCompaction + " acknowledged");
+        if (live.isEmpty()) {
+            channel.truncate(0);
+            channel.force(false);
+        } else {
+            File compacted = new File(file.getPath() + ".tmp");
+            FileChannel previous = channel;
+            channel = new RandomAccessFile(compacted, "rw").getChannel();
+            channel.truncate(0);
+            for (Entry entry : live.values()) {
+                byte[] text = entry.intentText.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer payload = ByteBuffer.allocate(4 + text.length + entry.body.length);
+                payload.putInt(text.length).put(text).put(entry.body);
+                writeRecord(TYPE_APPEND, entry.id, payload.array());
+            }
+            channel.force(false);
+            channel.close();
+            previous.close();
+            boolean renamed = compacted.renameTo(file);
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            channel.position(channel.size());
+            if (!renamed) {
+                throw new IOException("Failed to replace " + file + " with compacted journal");
+            }
+        }
+        unsyncedRecords = 0;
+        ackedSinceCompaction = 0;
+    }
+}
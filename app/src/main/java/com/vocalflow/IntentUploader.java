@@ -0,0 +1,323 @@
+package com.vocalflow;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Collects recorded intents and uploads them to record_intent in batches.
+ *
+ * Intents are queued on a single background thread and flushed together once
+ * the batch is full or the oldest one has waited long enough, so the radio wakes
+ * up once per batch instead of once per intent. Bodies are gzipped and failed
+ * uploads are retried with exponential backoff. If the server turns a gzipped
+ * body away as malformed or unsupported (400 or 415), the upload is sent again
+ * uncompressed and bodies stay uncompressed from then on. Requests go through the
+ * application's shared {@link NetworkClient} connection pool.
+ *
+ * Once {@link #init(Context, OkHttpClient)} has run, queued intents are also written to an
+ * {@link IntentOutbox} journal and only dropped from it when the server accepts
+ * them, or rejects them for good, so anything still pending is uploaded again
+ * on the next launch.
+ */
+public class IntentUploader {
+    private static final String TAG = "IntentUploader";
+    private static final String OUTBOX_FILE_NAME = "intent_outbox.log";
+    private static final String RECORD_INTENT_URL = "https://web-production-9ea4.up.railway.app/api/record_intent/";
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final long MAX_BATCH_AGE_MS = 15000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 2000;
+    private static final long MAX_BACKOFF_MS = 60000;
+    private static IntentUploader instance;
+
+    private final ScheduledExecutorService executor;
+    // Only touched on the executor thread
+    private OkHttpClient client;
+    // Only touched on the executor thread
+    private final List<PendingUpload> pending = new ArrayList<>();
+    private IntentOutbox outbox;
+    private ScheduledFuture<?> scheduledFlush;
+    private int failedFlushes = 0;
+    // Cleared the first time the server rejects a gzipped body
+    private boolean gzipBodies = true;
+
+    private static final class PendingUpload {
+        final long outboxId;
+        final String intentText;
+        final byte[] body;
+        int attempts = 0;
+
+        PendingUpload(long outboxId, String intentText, byte[] body) {
+            this.outboxId = outboxId;
+            this.intentText = intentText;
+            this.body = body;
+        }
+    }
+
+    private IntentUploader() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, TAG);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static synchronized IntentUploader getInstance() {
+        if (instance == null) {
+            instance = new IntentUploader();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the HTTP client to upload with, opens the on-disk outbox and
+     * re-queues intents left over from a previous run.
+     */
+    public void init(Context context, OkHttpClient httpClient) {
+        final File file = new File(context.getFilesDir(), OUTBOX_FILE_NAME);
+        executor.execute(() -> {
+            client = httpClient;
+            if (outbox != null) {
+                return;
+            }
+            IntentOutbox opened = new IntentOutbox(file, executor);
+            try {
+                for (IntentOutbox.Entry entry : opened.open()) {
+                    pending.add(new PendingUpload(entry.id, entry.intentText, entry.body));
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error opening outbox, uploads will not survive restarts: " + e.getMessage());
+                return;
+            }
+            outbox = opened;
+            if (!pending.isEmpty()) {
+                Log.d(TAG, "Restored " + pending.size() + " intents from outbox");
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Queues an intent and its interaction events for upload.
+     */
+    public void enqueue(String intentText, List<InteractionEvent> events) {
+        final List<InteractionEvent> snapshot = new ArrayList<>(events);
+        executor.execute(() -> {
+            byte[] body;
+            try {
+                body = gzip(buildRequestBody(intentText, snapshot).toString());
+            } catch (JSONException | IOException e) {
+                Log.e(TAG, "Error creating request body: " + e.getMessage());
+                return;
+            }
+            long outboxId = -1;
+            if (outbox != null) {
+                try {
+                    outboxId = outbox.append(intentText, body).id;
+                } catch (IOException e) {
+                    Log.e(TAG, "Error writing intent to outbox: " + e.getMessage());
+                }
+            }
+            pending.add(new PendingUpload(outboxId, intentText, body));
+            Log.d(TAG, "Queued intent for upload (" + pending.size() + " pending): " + intentText);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                flush();
+            } else {
+                scheduleFlush(MAX_BATCH_AGE_MS);
+            }
+        });
+    }
+
+    /**
+     * Uploads everything that is queued without waiting for the batch to fill.
+     */
+    public void flushNow() {
+        executor.execute(this::flush);
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (scheduledFlush != null && !scheduledFlush.isDone()) {
+            return;
+        }
+        scheduledFlush = executor.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (client == null) {
+            Log.w(TAG, "Uploader not initialized, holding " + pending.size() + " intents");
+            return;
+        }
+
+        Log.d(TAG, "Flushing " + pending.size() + " intents");
+        boolean retryNeeded = false;
+        Iterator<PendingUpload> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            PendingUpload upload = iterator.next();
+            upload.attempts++;
+            int status = send(upload);
+            if (status >= 200 && status < 300) {
+                Log.d(TAG, "API request sent for intent: " + upload.intentText);
+                iterator.remove();
+                acknowledge(upload);
+            } else if (status >= 400 && status < 500 && status != 429) {
+                // Client errors will not succeed on retry; 400 and 415 have already been retried uncompressed
+                Log.e(TAG, "Server rejected intent with " + status + ", dropping it: " + upload.intentText);
+                iterator.remove();
+                acknowledge(upload);
+            } else if (upload.attempts >= MAX_ATTEMPTS) {
+                // Left in the outbox so it is retried on the next launch
+                Log.e(TAG, "Giving up on intent after " + upload.attempts + " attempts: " + upload.intentText);
+                iterator.remove();
+            } else {
+                retryNeeded = true;
+            }
+        }
+
+        if (retryNeeded) {
+            failedFlushes++;
+            long backoff = Math.min(INITIAL_BACKOFF_MS << Math.min(failedFlushes - 1, 5), MAX_BACKOFF_MS);
+            Log.d(TAG, "Retrying " + pending.size() + " intents in " + backoff + "ms");
+            scheduleFlush(backoff);
+        } else {
+            failedFlushes = 0;
+        }
+    }
+
+    private void acknowledge(PendingUpload upload) {
+        if (outbox == null || upload.outboxId < 0) {
+            return;
+        }
+        try {
+            outbox.acknowledge(upload.outboxId);
+        } catch (IOException e) {
+            Log.e(TAG, "Error acknowledging intent in outbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Uploads the intent, falling back to an uncompressed body if the server
+     * does not take gzip. Returns the HTTP status, or -1 if there was no response.
+     */
+    private int send(PendingUpload upload) {
+        if (gzipBodies) {
+            int status = post(upload.body, true);
+            if (status != 400 && status != 415) {
+                return status;
+            }
+            Log.w(TAG, "Server rejected a gzipped body, uploading uncompressed from now on");
+            gzipBodies = false;
+        }
+        byte[] body;
+        try {
+            body = gunzip(upload.body);
+        } catch (IOException e) {
+            Log.e(TAG, "Error decompressing request body: " + e.getMessage());
+            return -1;
+        }
+        return post(body, false);
+    }
+
+    private int post(byte[] body, boolean gzipped) {
+        Request.Builder builder = new Request.Builder()
+            .url(RECORD_INTENT_URL)
+            .post(RequestBody.create(body, JSON));
+        if (gzipped) {
+            builder.addHeader("Content-Encoding", "gzip");
+        }
+
+        try (Response response = client.newCall(builder.build()).execute()) {
+            if (!response.isSuccessful()) {
+                Log.e(TAG, "Status code: " + response.code());
+                if (response.code() >= 400 && response.code() < 500) {
+                    Log.e(TAG, "Response data: " + (response.body() != null ? response.body().string() : ""));
+                }
+            }
+            return response.code();
+        } catch (IOException e) {
+            Log.e(TAG, "API Error: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static JSONObject buildRequestBody(String intentText, List<InteractionEvent> events) throws JSONException {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("intent_text", intentText);
+
+        JSONArray eventsArray = new JSONArray();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        for (InteractionEvent event : events) {
+            JSONObject eventJson = new JSONObject();
+            eventJson.put("event_type", event.getActionType().toLowerCase());
+            eventJson.put("timestamp", dateFormat.format(event.getTimestamp()));
+            eventJson.put("view_id", event.getViewId());
+            eventJson.put("view_resource_name", event.getViewResourceName());
+            eventJson.put("screen_name", event.getScreenName());
+            eventJson.put("action_type", event.getActionType());
+            if (event.getValue() != null) {
+                eventJson.put("value", event.getValue());
+            }
+            eventsArray.put(eventJson);
+        }
+
+        requestBody.put("interaction_events", eventsArray);
+        return requestBody;
+    }
+
+    private static byte[] gzip(String json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length * 4);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -6,13 +6,19 @@ public class InteractionEvent {
     private final String viewResourceName;
     private final String screenName;
     private final String actionType;
+    private final String value;
 
     public InteractionEvent(long timestamp, int viewId, String viewResourceName, String screenName, String actionType) {
+        this(timestamp, viewId, viewResourceName, screenName, actionType, null);
+    }
+
+    public InteractionEvent(long timestamp, int viewId, String viewResourceName, String screenName, String actionType, String value) {
         this.timestamp = timestamp;
         this.viewId = viewId;
         this.viewResourceName = viewResourceName;
         this.screenName = screenName;
         this.actionType = actionType;
+        this.value = value;
     }
 
     public long getTimestamp() {
@@ -35,6 +41,14 @@ public class InteractionEvent {
         return actionType;
     }
 
+    /**
+     * The final text of an input event, or null for clicks and for fields whose
+     * contents are not recorded.
+     */
+    public String getValue() {
+        return value;
+    }
+
     @Override
     public String toString() {
         return "InteractionEvent{" +
@@ -43,6 +57,7 @@ public class InteractionEvent {
                 ", viewResourceName='" + viewResourceName + '\'' +
                 ", screenName='" + screenName + '\'' +
                 ", actionType='" + actionType + '\'' +
+                (value != null ? ", value='" + value + '\'' : "") +
                 '}';
     }
 } 
\ No newline at end of file
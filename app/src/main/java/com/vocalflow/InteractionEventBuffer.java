@@ -0,0 +1,145 @@
+package com.vocalflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring buffer for captured interaction events.
+ *
+ * Events are stored column-wise in primitive arrays, with screen and resource
+ * names interned in a {@link SymbolTable}, so recording an event allocates nothing.
+ * {@link InteractionEvent} objects are only built when a snapshot is taken.
+ * Input values are kept by reference, since they are rarely repeated.
+ *
+ * Written by a single producer (the UI thread); any thread may take a snapshot.
+ * Appending and evicting are O(1) and never shift or copy the backing arrays.
+ *
+ * Snapshots work like a seqlock: the slots are copied between two reads of the
+ * write sequence, and only slots the producer cannot have touched in between,
+ * and whose own sequence number is the one expected, are turned into events.
+ */
+class InteractionEventBuffer {
+    private final int capacity;
+    private final long[] timestamps;
+    private final int[] viewIds;
+    private final int[] resourceNames;
+    private final int[] screenNames;
+    private final byte[] actionTypes;
+    private final String[] values;
+    // Sequence number of the event in each slot, written last
+    private final long[] sequences;
+    private final SymbolTable symbols = new SymbolTable();
+    // Sequence numbers only ever grow; slot index is sequence % capacity.
+    private volatile long writeSequence = 0;
+    private volatile long startSequence = 0;
+
+    InteractionEventBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Buffer capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.timestamps = new long[capacity];
+        this.viewIds = new int[capacity];
+        this.resourceNames = new int[capacity];
+        this.screenNames = new int[capacity];
+        this.actionTypes = new byte[capacity];
+        this.values = new String[capacity];
+        this.sequences = new long[capacity];
+        Arrays.fill(sequences, -1);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Appends an event, returning true if the oldest event was evicted to make room.
+     * Must only be called from the producer thread.
+     */
+    boolean add(long timestamp, int viewId, String viewResourceName, String screenName, ActionType actionType) {
+        return add(timestamp, viewId, viewResourceName, screenName, actionType, null);
+    }
+
+    /**
+     * Appends an event carrying a value, such as the final text of an input.
+     * Must only be called from the producer thread.
+     */
+    boolean add(long timestamp, int viewId, String viewResourceName, String screenName, ActionType actionType, String value) {
+        long seq = writeSequence;
+        int index = (int) (seq % capacity);
+        boolean evicted = seq - startSequence >= capacity;
+        timestamps[index] = timestamp;
+        viewIds[index] = viewId;
+        resourceNames[index] = symbols.intern(viewResourceName);
+        screenNames[index] = symbols.intern(screenName);
+        actionTypes[index] = actionType.code();
+        values[index] = value;
+        sequences[index] = seq;
+        // Volatile write publishes the slot to readers
+        writeSequence = seq + 1;
+        return evicted;
+    }
+
+    int size() {
+        long end = writeSequence;
+        return (int) Math.min(end - startSequence, capacity);
+    }
+
+    /**
+     * Drops all buffered events. Must only be called from the producer thread.
+     */
+    void clear() {
+        startSequence = writeSequence;
+    }
+
+    /**
+     * Returns the buffered events, oldest first.
+     */
+    List<InteractionEvent> snapshot() {
+        long end = writeSequence;
+        long start = Math.max(startSequence, end - capacity);
+        int count = (int) (end - start);
+        long[] copiedSequences = new long[count];
+        long[] copiedTimestamps = new long[count];
+        int[] copiedViewIds = new int[count];
+        int[] copiedResourceNames = new int[count];
+        int[] copiedScreenNames = new int[count];
+        byte[] copiedActionTypes = new byte[count];
+        String[] copiedValues = new String[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((start + i) % capacity);
+            copiedSequences[i] = sequences[index];
+            copiedTimestamps[i] = timestamps[index];
+            copiedViewIds[i] = viewIds[index];
+            copiedResourceNames[i] = resourceNames[index];
+            copiedScreenNames[i] = screenNames[index];
+            copiedActionTypes[i] = actionTypes[index];
+            copiedValues[i] = values[index];
+        }
+        // The producer may have lapped us while copying. Anything it overwrote is
+        // torn, including the slot it may be writing right now, which it reuses
+        // before bumping writeSequence.
+        long firstIntact = Math.max(start, writeSequence + 1 - capacity);
+
+        List<InteractionEvent> events = new ArrayList<>(count);
+        for (int i = (int) Math.min(firstIntact - start, count); i < count; i++) {
+            if (copiedSequences[i] != start + i) {
+                continue;
+            }
+            String resourceName = symbols.lookup(copiedResourceNames[i]);
+            String screenName = symbols.lookup(copiedScreenNames[i]);
+            if (resourceName == null || screenName == null) {
+                continue;
+            }
+            events.add(new InteractionEvent(
+                    copiedTimestamps[i],
+                    copiedViewIds[i],
+                    resourceName,
+                    screenName,
+                    ActionType.fromCode(copiedActionTypes[i]).getWireName(),
+                    copiedValues[i]));
+        }
+        return events;
+    }
+}
@@ -3,22 +3,68 @@ package com.vocalflow;
 import android.app.Activity;
 import android.app.Application;
 import android.content.Intent;
+import android.os.Process;
+import android.os.SystemClock;
 import android.view.View;
 import android.widget.EditText;
 import android.util.Log;
-import android.view.ViewGroup;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Replays recorded interaction flows, one session at a time.
+ *
+ * Sessions run in order on a single replay thread. A new session can either
+ * queue behind the ones already submitted or cancel them and take their place,
+ * which is what a fresh voice command wants.
+ *
+ * A session replays either a stream of events, interpreted one at a time as
+ * they arrive, or a {@link ReplayPlan} compiled ahead of time from a complete
+ * flow, which skips redundant steps and all name lookups.
+ */
 public class InteractionReplayManager {
+    /**
+     * What to do with sessions that are running or waiting when a new one is started.
+     */
+    public enum Mode {
+        /** Cancel them, so the new session starts as soon as the current step ends. */
+        REPLACE,
+        /** Let them finish first. */
+        QUEUE
+    }
+
     private static final String TAG = "InteractionReplayManager";
+    // Upper bounds on waiting for the UI; replay normally moves on as soon as it is ready
+    private static final long SCREEN_TIMEOUT_MS = 3000;
+    private static final long TRANSITION_TIMEOUT_MS = 1500;
+    private static final long ACTION_TIMEOUT_MS = 1000;
+    // Fixed delays used in visible pacing mode, so a demo can be followed by eye
+    private static final long PACING_BETWEEN_EVENTS_MS = 300;
+    private static final long PACING_BEFORE_ACTION_MS = 500;
+    private static final long PACING_AFTER_NAVIGATION_MS = 1000;
     private static InteractionReplayManager instance;
     private final Application app;
-    private boolean isReplaying = false;
-    private Thread replayThread;
+    private final ReplayScheduler scheduler;
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+            r.run();
+        }, "VocalFlow-Replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Sessions submitted and not yet finished, oldest first
+    private final List<ReplaySession> sessions = new ArrayList<>();
+    private volatile boolean visiblePacing = false;
+    // Only touched on the replay thread
+    private boolean lastEventWasClick = false;
 
     private InteractionReplayManager(Application app) {
         this.app = app;
+        this.scheduler = new ReplayScheduler();
     }
 
     public static synchronized InteractionReplayManager getInstance(Application app) {
@@ -28,124 +74,274 @@ public class InteractionReplayManager {
         return instance;
     }
 
-    public void replay(List<InteractionEvent> events) {
-        if (isReplaying) {
-            Log.w(TAG, "Replay already in progress");
-            return;
-        }
+    /**
+     * When enabled, replay keeps fixed pauses between steps so it can be followed
+     * on screen. Otherwise each step runs as soon as the UI is ready for it.
+     */
+    public void setVisiblePacing(boolean visiblePacing) {
+        this.visiblePacing = visiblePacing;
+    }
+
+    public ReplaySession replay(List<InteractionEvent> events) {
+        return replay(ReplayEventStream.of(events));
+    }
+
+    /**
+     * Replays events as the stream releases them, replacing whatever replay
+     * is in progress.
+     */
+    public ReplaySession replay(ReplayEventStream events) {
+        return replay(events, Mode.REPLACE, null);
+    }
 
-        isReplaying = true;
-        replayThread = new Thread(() -> {
-            try {
-                for (InteractionEvent event : events) {
-                    if (!isReplaying) break; // Check if replay was stopped
-                    replayEvent(event);
-                    Thread.sleep(300); // Simulate delay between interactions
+    /**
+     * Starts a replay session. Events are replayed as the stream releases them,
+     * so replay can start while the rest of the flow is still being downloaded
+     * and parsed. The callback, if any, is called on the replay thread.
+     */
+    public ReplaySession replay(ReplayEventStream events, Mode mode, ReplaySession.Callback callback) {
+        return submit(new ReplaySession(events, callback), mode);
+    }
+
+    /**
+     * Compiles a complete flow into a plan that can be cached and replayed with
+     * {@link #replay(ReplayPlan, Mode, ReplaySession.Callback)}.
+     */
+    public ReplayPlan compile(List<InteractionEvent> events) {
+        return ReplayPlanCompiler.compile(events, app.getResources());
+    }
+
+    /**
+     * Starts a replay session for a compiled plan. The callback, if any, is
+     * called on the replay thread.
+     */
+    public ReplaySession replay(ReplayPlan plan, Mode mode, ReplaySession.Callback callback) {
+        return submit(new ReplaySession(plan, callback), mode);
+    }
+
+    private ReplaySession submit(ReplaySession session, Mode mode) {
+        synchronized (sessions) {
+            if (mode == Mode.REPLACE) {
+                for (ReplaySession stale : sessions) {
+                    Log.d(TAG, "Replacing replay in progress");
+                    stale.cancel();
                 }
-            } catch (InterruptedException e) {
-                Log.e(TAG, "Replay interrupted: " + e.getMessage());
-            } finally {
-                isReplaying = false;
             }
-        });
-        replayThread.start();
+            sessions.add(session);
+        }
+        replayExecutor.execute(() -> run(session));
+        return session;
     }
 
+    /**
+     * Cancels every running and queued replay.
+     */
     public void stop() {
-        isReplaying = false;
-        if (replayThread != null) {
-            replayThread.interrupt();
+        synchronized (sessions) {
+            for (ReplaySession session : sessions) {
+                session.cancel();
+            }
+        }
+    }
+
+    public boolean isReplaying() {
+        synchronized (sessions) {
+            return !sessions.isEmpty();
+        }
+    }
+
+    private void run(ReplaySession session) {
+        ReplaySession.Callback callback = session.getCallback();
+        try {
+            if (!session.start(Thread.currentThread())) {
+                return;
+            }
+            long sessionStart = SystemClock.uptimeMillis();
+            int index = session.getPlan() != null ? runPlan(session) : runStream(session);
+            Log.d(TAG, "Replay " + (session.isCancelled() ? "cancelled" : "finished") + " after "
+                + index + " steps in " + (SystemClock.uptimeMillis() - sessionStart) + " ms");
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Replay interrupted: " + e.getMessage());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Replay failed", e);
+        } finally {
+            synchronized (sessions) {
+                sessions.remove(session);
+            }
+            session.finish();
+            callback.onFinished(session);
+        }
+    }
+
+    /**
+     * Replays events as the session's stream releases them. Returns the number of steps run.
+     */
+    private int runStream(ReplaySession session) throws InterruptedException {
+        ReplaySession.Callback callback = session.getCallback();
+        lastEventWasClick = false;
+        int index = 0;
+        while (!session.isCancelled()) {
+            long waitStart = SystemClock.uptimeMillis();
+            InteractionEvent event = session.getEvents().take();
+            if (event == null || session.isCancelled()) {
+                break;
+            }
+            long stepStart = SystemClock.uptimeMillis();
+            callback.onStepStarted(session, event, index);
+            boolean performed = replayEvent(event);
+            ReplaySession.Step step = new ReplaySession.Step(event, index, performed,
+                stepStart - waitStart, SystemClock.uptimeMillis() - stepStart);
+            session.addStep(step);
+            Log.d(TAG, "Replayed step " + index + " in " + step.getDurationMs() + " ms");
+            callback.onStepCompleted(session, step);
+            index++;
+            pace(PACING_BETWEEN_EVENTS_MS);
         }
+        return index;
     }
 
-    private void replayEvent(InteractionEvent event) {
+    /**
+     * Replays the session's compiled plan. Returns the number of steps run.
+     */
+    private int runPlan(ReplaySession session) throws InterruptedException {
+        ReplaySession.Callback callback = session.getCallback();
+        ReplayPlan plan = session.getPlan();
+        int index = 0;
+        for (; index < plan.size() && !session.isCancelled(); index++) {
+            long stepStart = SystemClock.uptimeMillis();
+            callback.onStepStarted(session, plan.events[index], index);
+            boolean performed = replayStep(plan, index);
+            ReplaySession.Step step = new ReplaySession.Step(plan.events[index], index, performed,
+                0, SystemClock.uptimeMillis() - stepStart);
+            session.addStep(step);
+            Log.d(TAG, "Replayed step " + index + " in " + step.getDurationMs() + " ms");
+            callback.onStepCompleted(session, step);
+            pace(PACING_BETWEEN_EVENTS_MS);
+        }
+        return index;
+    }
+
+    /**
+     * Replays one step of a plan, returning false if it had to be skipped.
+     */
+    private boolean replayStep(ReplayPlan plan, int index) throws InterruptedException {
+        Class<?> activityClass = plan.activities[index];
+        InteractionEvent event = plan.events[index];
+        Activity activity;
+        if (ReplayScheduler.isScreen(getCurrentActivity(), activityClass, event.getScreenName())) {
+            activity = scheduler.awaitScreen(activityClass, event.getScreenName(), SCREEN_TIMEOUT_MS);
+        } else {
+            activity = plan.opensOnClick[index]
+                ? scheduler.awaitScreen(activityClass, event.getScreenName(), TRANSITION_TIMEOUT_MS)
+                : null;
+            if (activity == null) {
+                navigateTo(activityClass, event.getScreenName());
+                activity = scheduler.awaitScreen(activityClass, event.getScreenName(), SCREEN_TIMEOUT_MS);
+            }
+            pace(PACING_AFTER_NAVIGATION_MS);
+        }
+        if (activity == null) {
+            Log.w(TAG, "Screen not ready, skipping step: " + event);
+            return false;
+        }
+        View view = ViewIndex.forActivity(activity).findView(plan.viewIds[index]);
+        if (view == null) {
+            Log.w(TAG, "View not found for step: " + event);
+            return false;
+        }
+        pace(PACING_BEFORE_ACTION_MS);
+        return perform(plan.actions[index], view, event);
+    }
+
+    /**
+     * Replays one event, returning false if it had to be skipped.
+     */
+    private boolean replayEvent(InteractionEvent event) throws InterruptedException {
         Log.d(TAG, "Replaying event: " + event);
-        Activity currentActivity = getCurrentActivity();
-        
-        if (currentActivity == null || !currentActivity.getClass().getSimpleName().equals(event.getScreenName())) {
-            navigateTo(event.getScreenName());
-            sleepForUi();
-            return; // Wait for next iteration after navigation
+        Activity currentActivity = awaitScreenFor(event.getScreenName());
+        if (currentActivity == null) {
+            Log.w(TAG, "Screen not ready, skipping event: " + event);
+            return false;
         }
 
         // Find view by resource name
         View view = findViewByResourceName(currentActivity, event.getViewResourceName());
         if (view == null) {
             Log.w(TAG, "View not found for resource name: " + event.getViewResourceName());
-            return;
+            return false;
         }
 
-        // Add delay before performing the action
-        try {
-            Thread.sleep(500); // 500ms delay to make the replay more visible
-        } catch (InterruptedException e) {
-            Log.e(TAG, "Delay interrupted: " + e.getMessage());
-            return;
+        ActionType action = ActionType.fromWireName(event.getActionType());
+        if (action == null) {
+            Log.w(TAG, "Unknown action type: " + event.getActionType());
+            return false;
         }
+        pace(PACING_BEFORE_ACTION_MS);
+        return perform(action, view, event);
+    }
 
-        switch (event.getActionType()) {
-            case "click":
-                view.post(() -> {
+    private boolean perform(ActionType action, View view, InteractionEvent event) throws InterruptedException {
+        switch (action) {
+            case CLICK:
+                lastEventWasClick = true;
+                scheduler.runAndAwaitFrame(() -> {
                     Log.d(TAG, "Performing click on view: " + event.getViewResourceName());
                     view.performClick();
-                });
-                break;
-            case "input":
+                }, ACTION_TIMEOUT_MS);
+                return true;
+            case INPUT:
+                lastEventWasClick = false;
                 if (view instanceof EditText) {
-                    view.post(() -> {
+                    scheduler.runAndAwaitFrame(() -> {
                         Log.d(TAG, "Setting text on EditText: " + event.getViewResourceName());
-                        ((EditText) view).setText("");  // Clear existing text
-                    });
+                        EditText editText = (EditText) view;
+                        // Events without a recorded value just clear the field
+                        editText.setText(event.getValue() != null ? event.getValue() : "");
+                        editText.setSelection(editText.length());
+                    }, ACTION_TIMEOUT_MS);
+                    return true;
                 }
-                break;
+                return false;
             default:
-                Log.w(TAG, "Unknown action type: " + event.getActionType());
+                return false;
         }
     }
 
-    private View findViewByResourceName(Activity activity, String resourceName) {
-        if (resourceName == null || resourceName.equals("NO_ID")) {
-            return null;
+    /**
+     * Returns the laid-out Activity for the screen, navigating to it if the
+     * previous step did not already lead there. Returns null if it never became ready.
+     */
+    private Activity awaitScreenFor(String screenName) throws InterruptedException {
+        Activity current = getCurrentActivity();
+        if (current != null && current.getClass().getSimpleName().equals(screenName)) {
+            return scheduler.awaitScreen(screenName, SCREEN_TIMEOUT_MS);
         }
 
-        // Try to find the view by traversing the view hierarchy
-        View rootView = activity.findViewById(android.R.id.content);
-        if (rootView instanceof ViewGroup) {
-            return findViewInHierarchy((ViewGroup) rootView, resourceName);
+        // A replayed click usually opens the next screen by itself, so give it a chance first
+        if (lastEventWasClick) {
+            Activity activity = scheduler.awaitScreen(screenName, TRANSITION_TIMEOUT_MS);
+            if (activity != null) {
+                pace(PACING_AFTER_NAVIGATION_MS);
+                return activity;
+            }
         }
-        return null;
-    }
 
-    private View findViewInHierarchy(ViewGroup root, String resourceName) {
-        for (int i = 0; i < root.getChildCount(); i++) {
-            View child = root.getChildAt(i);
-            
-            // Check if this view matches the resource name
-            try {
-                if (child.getId() != View.NO_ID) {
-                    String childResourceName = child.getResources().getResourceName(child.getId());
-                    if (resourceName.equals(childResourceName)) {
-                        return child;
-                    }
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error getting resource name for view: " + e.getMessage());
-            }
+        navigateTo(screenName);
+        Activity activity = scheduler.awaitScreen(screenName, SCREEN_TIMEOUT_MS);
+        pace(PACING_AFTER_NAVIGATION_MS);
+        return activity;
+    }
 
-            // Recursively check children if this is a ViewGroup
-            if (child instanceof ViewGroup) {
-                View found = findViewInHierarchy((ViewGroup) child, resourceName);
-                if (found != null) {
-                    return found;
-                }
-            }
-        }
-        return null;
+    private View findViewByResourceName(Activity activity, String resourceName) {
+        return ViewIndex.forActivity(activity).findView(resourceName);
     }
 
     private void navigateTo(String screenName) {
+        navigateTo(ScreenMapper.getActivityClass(screenName), screenName);
+    }
+
+    private void navigateTo(Class<?> targetActivity, String screenName) {
         Log.d(TAG, "Navigating to screen: " + screenName);
-        Class<?> targetActivity = ScreenMapper.getActivityClass(screenName);
         if (targetActivity != null && getCurrentActivity() != null) {
             Intent intent = new Intent(app, targetActivity);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -155,11 +351,9 @@ public class InteractionReplayManager {
         }
     }
 
-    private void sleepForUi() {
-        try {
-            Thread.sleep(1000); // wait for Activity to load and layout to render
-        } catch (InterruptedException e) {
-            Log.e(TAG, "Sleep interrupted: " + e.getMessage());
+    private void pace(long delayMs) throws InterruptedException {
+        if (visiblePacing) {
+            Thread.sleep(delayMs);
         }
     }
 
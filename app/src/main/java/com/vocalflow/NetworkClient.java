@@ -0,0 +1,79 @@
+package com.vocalflow;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Application-wide networking shared by every VocalFlow network call.
+ *
+ * One OkHttp client keeps a connection pool (HTTP/2 where the server offers it),
+ * a response cache and a bounded dispatcher, so calls reuse warm TLS connections
+ * instead of handshaking each time. Blocking work that has to run off the main
+ * thread, such as synchronous calls and response parsing, goes to the shared
+ * background executor instead of a thread created per call.
+ */
+public class NetworkClient {
+    private static final long HTTP_CACHE_SIZE = 10L * 1024 * 1024;
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+    private static final int BACKGROUND_THREADS = 2;
+
+    private final OkHttpClient httpClient;
+    private final ExecutorService backgroundExecutor;
+
+    public NetworkClient(Context context) {
+        ThreadPoolExecutor dispatcherExecutor = new ThreadPoolExecutor(
+            0, MAX_REQUESTS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), namedThreadFactory("VocalFlow-Http"));
+        Dispatcher dispatcher = new Dispatcher(dispatcherExecutor);
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        this.httpClient = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .cache(new Cache(new File(context.getCacheDir(), "http"), HTTP_CACHE_SIZE))
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(30, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .build();
+
+        ThreadPoolExecutor background = new ThreadPoolExecutor(
+            BACKGROUND_THREADS, BACKGROUND_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), namedThreadFactory("VocalFlow-Background"));
+        background.allowCoreThreadTimeOut(true);
+        this.backgroundExecutor = background;
+    }
+
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public ExecutorService getBackgroundExecutor() {
+        return backgroundExecutor;
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
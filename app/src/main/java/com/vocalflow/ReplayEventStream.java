@@ -0,0 +1,112 @@
+package com.vocalflow;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Hands events from a producer (such as a response still being downloaded) to
+ * the replay thread as they arrive.
+ *
+ * Events may arrive slightly out of order, so up to {@code reorderWindow} of
+ * them are held back and released earliest-timestamp first, and in arrival order
+ * when timestamps tie. Recorded timestamps only have one-second resolution, so
+ * an input and the click that submits it often share one. Anything arriving
+ * after a later event has already been released is dropped, because replaying
+ * it would run the flow out of order.
+ */
+public class ReplayEventStream {
+    private static final String TAG = "ReplayEventStream";
+    public static final int DEFAULT_REORDER_WINDOW = 2;
+
+    private final int reorderWindow;
+    private final PriorityQueue<Queued> pending = new PriorityQueue<>(11, (q1, q2) -> {
+        int byTime = Long.compare(q1.event.getTimestamp(), q2.event.getTimestamp());
+        return byTime != 0 ? byTime : Long.compare(q1.arrival, q2.arrival);
+    });
+    private long arrivals = 0;
+    private long lastReleasedTimestamp = Long.MIN_VALUE;
+    private boolean completed = false;
+    private boolean aborted = false;
+
+    private static final class Queued {
+        final InteractionEvent event;
+        final long arrival;
+
+        Queued(InteractionEvent event, long arrival) {
+            this.event = event;
+            this.arrival = arrival;
+        }
+    }
+
+    public ReplayEventStream() {
+        this(DEFAULT_REORDER_WINDOW);
+    }
+
+    public ReplayEventStream(int reorderWindow) {
+        this.reorderWindow = reorderWindow;
+    }
+
+    /**
+     * Returns a stream that already holds every event and is complete.
+     */
+    public static ReplayEventStream of(List<InteractionEvent> events) {
+        ReplayEventStream stream = new ReplayEventStream(0);
+        for (InteractionEvent event : events) {
+            stream.offer(event);
+        }
+        stream.complete();
+        return stream;
+    }
+
+    public synchronized void offer(InteractionEvent event) {
+        if (completed) {
+            return;
+        }
+        if (event.getTimestamp() < lastReleasedTimestamp) {
+            Log.w(TAG, "Dropping event that arrived too late to replay in order: " + event);
+            return;
+        }
+        pending.add(new Queued(event, arrivals++));
+        notifyAll();
+    }
+
+    /**
+     * Marks the end of the stream; buffered events are still replayed.
+     */
+    public synchronized void complete() {
+        completed = true;
+        notifyAll();
+    }
+
+    /**
+     * Ends the stream and discards anything not yet replayed, e.g. when the download fails.
+     */
+    public synchronized void abort() {
+        completed = true;
+        aborted = true;
+        pending.clear();
+        notifyAll();
+    }
+
+    /**
+     * Blocks until the next event can be released, returning null once the stream is finished.
+     */
+    public synchronized InteractionEvent take() throws InterruptedException {
+        while (true) {
+            if (aborted) {
+                return null;
+            }
+            if (!pending.isEmpty() && (completed || pending.size() > reorderWindow)) {
+                InteractionEvent event = pending.poll().event;
+                lastReleasedTimestamp = event.getTimestamp();
+                return event;
+            }
+            if (completed) {
+                return null;
+            }
+            wait();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.vocalflow;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded flow compiled for replay by {@link InteractionReplayManager#compile}.
+ *
+ * Steps are kept as parallel arrays with everything the replay loop needs
+ * already worked out: the Activity class of each screen, the view ID, the
+ * action, and whether the step before it is expected to open its screen.
+ * Replaying a plan compares no strings. Plans are immutable and can be
+ * cached and replayed any number of times.
+ */
+public final class ReplayPlan {
+    final InteractionEvent[] events;
+    // Null where the screen is not in ScreenMapper and can only be waited for
+    final Class<?>[] activities;
+    // True where the screen changes right after a click, which should open it by itself
+    final boolean[] opensOnClick;
+    final ActionType[] actions;
+    final int[] viewIds;
+    private final int sourceEventCount;
+
+    ReplayPlan(InteractionEvent[] events, Class<?>[] activities, boolean[] opensOnClick, ActionType[] actions,
+               int[] viewIds, int sourceEventCount) {
+        this.events = events;
+        this.activities = activities;
+        this.opensOnClick = opensOnClick;
+        this.actions = actions;
+        this.viewIds = viewIds;
+        this.sourceEventCount = sourceEventCount;
+    }
+
+    public int size() {
+        return events.length;
+    }
+
+    /**
+     * How many recorded events the plan was compiled from.
+     */
+    public int getSourceEventCount() {
+        return sourceEventCount;
+    }
+
+    /**
+     * The recorded events that survived compilation, one per step.
+     */
+    public List<InteractionEvent> getEvents() {
+        return Collections.unmodifiableList(Arrays.asList(events));
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayPlan{" +
+                "steps=" + events.length +
+                ", sourceEvents=" + sourceEventCount +
+                '}';
+    }
+}
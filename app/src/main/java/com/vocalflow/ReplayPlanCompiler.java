@@ -0,0 +1,117 @@
+package com.vocalflow;
+
+import android.content.res.Resources;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Turns a recorded event list into a {@link ReplayPlan}.
+ *
+ * Steps that would have no effect are dropped while compiling:
+ * <ul>
+ * <li>events whose action is unknown or whose view does not exist in this build,</li>
+ * <li>input into a field that is typed into again before anything is clicked,
+ * since only the last text is ever seen,</li>
+ * <li>a click repeated on the same view within a double-tap, which the
+ * recording picked up twice. Only checked when both timestamps have
+ * millisecond precision; recorded flows come back from the server in whole
+ * seconds, and two taps on a "+" button within the same second are real.</li>
+ * </ul>
+ * Screen changes that follow a click are marked, so replay gives the click
+ * the chance to open the screen before navigating there itself. Names are
+ * resolved to Activity classes through {@link ScreenMapper} and to view IDs
+ * through the app's resources.
+ */
+class ReplayPlanCompiler {
+    private static final String TAG = "ReplayPlanCompiler";
+    private static final long DUPLICATE_CLICK_WINDOW_MS = 500;
+
+    private ReplayPlanCompiler() {}
+
+    static ReplayPlan compile(List<InteractionEvent> recorded, Resources resources) {
+        List<InteractionEvent> events = new ArrayList<>(recorded);
+        Collections.sort(events, (e1, e2) -> Long.compare(e1.getTimestamp(), e2.getTimestamp()));
+
+        List<InteractionEvent> resolved = new ArrayList<>(events.size());
+        List<ActionType> actions = new ArrayList<>(events.size());
+        List<Integer> viewIds = new ArrayList<>(events.size());
+        for (InteractionEvent event : events) {
+            ActionType action = ActionType.fromWireName(event.getActionType());
+            int viewId = ViewIndex.resolveId(resources, event.getViewResourceName());
+            if (action == null || viewId == 0) {
+                Log.w(TAG, "Dropping event that cannot be replayed: " + event);
+                continue;
+            }
+            resolved.add(event);
+            actions.add(action);
+            viewIds.add(viewId);
+        }
+
+        boolean[] dropped = new boolean[resolved.size()];
+        // Walking backwards: fields typed into again later, with no click in between
+        Set<String> overwritten = new HashSet<>();
+        for (int i = resolved.size() - 1; i >= 0; i--) {
+            if (actions.get(i) == ActionType.CLICK) {
+                overwritten.clear();
+                continue;
+            }
+            String field = resolved.get(i).getScreenName() + "/" + viewIds.get(i);
+            if (!overwritten.add(field)) {
+                dropped[i] = true;
+            }
+        }
+        int previous = -1;
+        for (int i = 0; i < resolved.size(); i++) {
+            if (dropped[i]) {
+                continue;
+            }
+            if (previous >= 0 && actions.get(i) == ActionType.CLICK && actions.get(previous) == ActionType.CLICK
+                    && viewIds.get(i).equals(viewIds.get(previous))
+                    && resolved.get(i).getScreenName().equals(resolved.get(previous).getScreenName())
+                    && hasMillis(resolved.get(i)) && hasMillis(resolved.get(previous))
+                    && resolved.get(i).getTimestamp() - resolved.get(previous).getTimestamp() <= DUPLICATE_CLICK_WINDOW_MS) {
+                dropped[i] = true;
+                continue;
+            }
+            previous = i;
+        }
+
+        int size = 0;
+        for (boolean drop : dropped) {
+            if (!drop) {
+                size++;
+            }
+        }
+        InteractionEvent[] planEvents = new InteractionEvent[size];
+        Class<?>[] planActivities = new Class<?>[size];
+        boolean[] planOpensOnClick = new boolean[size];
+        ActionType[] planActions = new ActionType[size];
+        int[] planViewIds = new int[size];
+        int step = 0;
+        for (int i = 0; i < resolved.size(); i++) {
+            if (dropped[i]) {
+                continue;
+            }
+            InteractionEvent event = resolved.get(i);
+            planEvents[step] = event;
+            planActivities[step] = ScreenMapper.getActivityClass(event.getScreenName());
+            planActions[step] = actions.get(i);
+            planViewIds[step] = viewIds.get(i);
+            planOpensOnClick[step] = step > 0 && planActions[step - 1] == ActionType.CLICK
+                && !event.getScreenName().equals(planEvents[step - 1].getScreenName());
+            step++;
+        }
+        Log.d(TAG, "Compiled " + events.size() + " events into " + size + " steps");
+        return new ReplayPlan(planEvents, planActivities, planOpensOnClick, planActions, planViewIds, events.size());
+    }
+
+    // A timestamp on a whole second most likely lost its milliseconds on the way
+    private static boolean hasMillis(InteractionEvent event) {
+        return event.getTimestamp() % 1000 != 0;
+    }
+}
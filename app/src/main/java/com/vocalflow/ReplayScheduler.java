@@ -0,0 +1,120 @@
+package com.vocalflow;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets the replay thread wait for the UI instead of sleeping for fixed delays.
+ *
+ * Replay advances once the target Activity has resumed and its view tree has
+ * finished layout, or once a posted action has run and the next frame has been
+ * drawn. Every wait has a timeout so a screen that never settles cannot stall
+ * replay forever.
+ */
+class ReplayScheduler {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object resumeLock = new Object();
+
+    ReplayScheduler() {
+        CurrentActivityHolder.getInstance().addListener(activity -> {
+            if (activity != null) {
+                synchronized (resumeLock) {
+                    resumeLock.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until the resumed Activity is the given screen and has been laid out.
+     * Returns that Activity, or null if it did not happen within the timeout.
+     */
+    Activity awaitScreen(String screenName, long timeoutMs) throws InterruptedException {
+        return awaitScreen(null, screenName, timeoutMs);
+    }
+
+    /**
+     * Like {@link #awaitScreen(String, long)}, recognizing the screen by its
+     * Activity class if it is known, so no names need comparing.
+     */
+    Activity awaitScreen(Class<?> activityClass, String screenName, long timeoutMs) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        Activity activity;
+        synchronized (resumeLock) {
+            while (!isScreen(activity = getCurrentActivity(), activityClass, screenName)) {
+                long remaining = deadline - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    return null;
+                }
+                resumeLock.wait(remaining);
+            }
+        }
+        long remaining = deadline - SystemClock.uptimeMillis();
+        return awaitLayout(activity, Math.max(remaining, 0)) ? activity : null;
+    }
+
+    /**
+     * Runs the action on the main thread and blocks until it has run and the
+     * next frame has been drawn, so its effects are visible before replay moves on.
+     */
+    boolean runAndAwaitFrame(Runnable action, long timeoutMs) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        mainHandler.post(() -> {
+            action.run();
+            Choreographer.getInstance().postFrameCallback(frameTimeNanos -> done.countDown());
+        });
+        return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean awaitLayout(Activity activity, long timeoutMs) throws InterruptedException {
+        CountDownLatch laidOut = new CountDownLatch(1);
+        ViewTreeObserver.OnGlobalLayoutListener listener = new ViewTreeObserver.OnGlobalLayoutListener() {
+            @Override
+            public void onGlobalLayout() {
+                activity.getWindow().getDecorView().getViewTreeObserver().removeOnGlobalLayoutListener(this);
+                laidOut.countDown();
+            }
+        };
+        mainHandler.post(() -> {
+            View decorView = activity.getWindow().getDecorView();
+            if (decorView.isLaidOut() && !decorView.isLayoutRequested()) {
+                laidOut.countDown();
+                return;
+            }
+            decorView.getViewTreeObserver().addOnGlobalLayoutListener(listener);
+        });
+        boolean done = false;
+        try {
+            done = laidOut.await(timeoutMs, TimeUnit.MILLISECONDS);
+            return done;
+        } finally {
+            if (!done) {
+                // Otherwise the listener, and the latch with it, stays on the observer
+                mainHandler.post(() -> activity.getWindow().getDecorView().getViewTreeObserver()
+                    .removeOnGlobalLayoutListener(listener));
+            }
+        }
+    }
+
+    static boolean isScreen(Activity activity, Class<?> activityClass, String screenName) {
+        if (activity == null) {
+            return false;
+        }
+        if (activityClass != null) {
+            return activity.getClass() == activityClass;
+        }
+        return activity.getClass().getSimpleName().equals(screenName);
+    }
+
+    private Activity getCurrentActivity() {
+        return CurrentActivityHolder.getInstance().getActivity();
+    }
+}
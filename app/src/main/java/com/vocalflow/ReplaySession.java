@@ -0,0 +1,180 @@
+package com.vocalflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle to one replay started through {@link InteractionReplayManager}.
+ *
+ * A session is either waiting behind another one, running, or finished. It can
+ * be cancelled at any point; a running session stops before its next step.
+ * Timings for every step are kept so slow screens show up in the metrics.
+ */
+public class ReplaySession {
+
+    /**
+     * Progress notifications for a session, called on the replay thread.
+     */
+    public interface Callback {
+        default void onStepStarted(ReplaySession session, InteractionEvent event, int stepIndex) {}
+
+        default void onStepCompleted(ReplaySession session, Step step) {}
+
+        default void onFinished(ReplaySession session) {}
+    }
+
+    /**
+     * Timing of one replayed event.
+     */
+    public static final class Step {
+        private final InteractionEvent event;
+        private final int index;
+        private final boolean performed;
+        private final long waitMs;
+        private final long durationMs;
+
+        Step(InteractionEvent event, int index, boolean performed, long waitMs, long durationMs) {
+            this.event = event;
+            this.index = index;
+            this.performed = performed;
+            this.waitMs = waitMs;
+            this.durationMs = durationMs;
+        }
+
+        public InteractionEvent getEvent() {
+            return event;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * False if the step was skipped because its screen or view never appeared.
+         */
+        public boolean isPerformed() {
+            return performed;
+        }
+
+        /**
+         * Time spent waiting for the event to arrive from the stream; always 0 for a plan.
+         */
+        public long getWaitMs() {
+            return waitMs;
+        }
+
+        /**
+         * Time from receiving the event to the action having been drawn.
+         */
+        public long getDurationMs() {
+            return durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Step{" +
+                    "index=" + index +
+                    ", performed=" + performed +
+                    ", waitMs=" + waitMs +
+                    ", durationMs=" + durationMs +
+                    ", event=" + event +
+                    '}';
+        }
+    }
+
+    // Exactly one of these is set
+    private final ReplayEventStream events;
+    private final ReplayPlan plan;
+    private final Callback callback;
+    private final List<Step> steps = new ArrayList<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile boolean cancelled = false;
+    private Thread runner;
+
+    ReplaySession(ReplayEventStream events, Callback callback) {
+        this(events, null, callback);
+    }
+
+    ReplaySession(ReplayPlan plan, Callback callback) {
+        this(null, plan, callback);
+    }
+
+    private ReplaySession(ReplayEventStream events, ReplayPlan plan, Callback callback) {
+        this.events = events;
+        this.plan = plan;
+        this.callback = callback != null ? callback : new Callback() {};
+    }
+
+    /**
+     * Stops the session. One that has not started yet never runs; a running one
+     * stops before its next step, without undoing what it already did.
+     */
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * Blocks until the session has finished or been cancelled, or the timeout passes.
+     * Returns true if it finished.
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+        return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the steps replayed so far, in order.
+     */
+    public synchronized List<Step> getSteps() {
+        return new ArrayList<>(steps);
+    }
+
+    ReplayEventStream getEvents() {
+        return events;
+    }
+
+    ReplayPlan getPlan() {
+        return plan;
+    }
+
+    Callback getCallback() {
+        return callback;
+    }
+
+    /**
+     * Binds the session to the thread running it. Returns false if it was
+     * cancelled before it got the chance to start.
+     */
+    synchronized boolean start(Thread thread) {
+        if (cancelled) {
+            return false;
+        }
+        runner = thread;
+        return true;
+    }
+
+    synchronized void addStep(Step step) {
+        steps.add(step);
+    }
+
+    void finish() {
+        synchronized (this) {
+            runner = null;
+        }
+        finished.countDown();
+    }
+}
@@ -0,0 +1,45 @@
+package com.vocalflow;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns repeated strings (screen and resource names) into small int IDs.
+ *
+ * IDs are assigned by a single writer; lookups by ID are safe from any thread.
+ */
+class SymbolTable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] symbols = new String[16];
+    private int count = 0;
+
+    /**
+     * Returns the ID for the given string, assigning one if needed.
+     * Must only be called from the writer thread.
+     */
+    int intern(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        String[] current = symbols;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+        }
+        current[count] = value;
+        ids.put(value, count);
+        // Volatile write publishes the new symbol to readers
+        symbols = current;
+        return count++;
+    }
+
+    /**
+     * Returns the string for the ID, or null if no string with that ID has
+     * been published to this thread yet.
+     */
+    String lookup(int id) {
+        String[] current = symbols;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.vocalflow;
+
+import android.app.Activity;
+import android.content.res.Resources;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-Activity index from view ID to View, used to find replay targets in O(1).
+ *
+ * The index is built with a single walk of the content view the first time it
+ * is needed and stored as a tag on the decor view, so it goes away with the
+ * Activity. A lookup that misses, or that finds a view which has since been
+ * detached or re-ID'd, rebuilds the index once, which picks up views added after
+ * the last build. Resource names are resolved to IDs once per process.
+ */
+class ViewIndex {
+    private static final Map<String, Integer> resourceIds = new HashMap<>();
+
+    private final Activity activity;
+    private final SparseArray<WeakReference<View>> views = new SparseArray<>();
+
+    private ViewIndex(Activity activity) {
+        this.activity = activity;
+    }
+
+    static ViewIndex forActivity(Activity activity) {
+        View decorView = activity.getWindow().getDecorView();
+        ViewIndex index = (ViewIndex) decorView.getTag(R.id.replay_view_index);
+        if (index == null) {
+            index = new ViewIndex(activity);
+            decorView.setTag(R.id.replay_view_index, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the view with the given fully qualified resource name
+     * (e.g. {@code com.vocalflow:id/payBillCard}), or null if it is not on screen.
+     */
+    View findView(String resourceName) {
+        return findView(resolveId(activity.getResources(), resourceName));
+    }
+
+    /**
+     * Returns the view with the given ID, or null if it is not on screen.
+     */
+    synchronized View findView(int id) {
+        if (id == 0) {
+            return null;
+        }
+        View view = lookup(id);
+        if (view == null) {
+            rebuild();
+            view = lookup(id);
+        }
+        return view;
+    }
+
+    private View lookup(int id) {
+        WeakReference<View> ref = views.get(id);
+        View view = ref != null ? ref.get() : null;
+        if (view != null && (view.getId() != id || !view.isAttachedToWindow())) {
+            return null;
+        }
+        return view;
+    }
+
+    private void rebuild() {
+        views.clear();
+        View root = activity.findViewById(android.R.id.content);
+        if (root != null) {
+            index(root);
+        }
+    }
+
+    private void index(View view) {
+        int id = view.getId();
+        // Keep the first match in traversal order, as a tree walk would find
+        if (id != View.NO_ID && views.get(id) == null) {
+            views.put(id, new WeakReference<>(view));
+        }
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                index(group.getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * Resolves a fully qualified resource name to its ID, or 0 if there is none.
+     */
+    static int resolveId(Resources resources, String resourceName) {
+        if (resourceName == null || resourceName.equals("NO_ID")) {
+            return 0;
+        }
+        synchronized (resourceIds) {
+            Integer id = resourceIds.get(resourceName);
+            if (id == null) {
+                // Returns 0 if the name is unknown, which is cached too
+                id = resources.getIdentifier(resourceName, null, null);
+                resourceIds.put(resourceName, id);
+            }
+            return id;
+        }
+    }
+}
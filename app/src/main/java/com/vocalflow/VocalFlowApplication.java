@@ -5,12 +5,16 @@ import android.app.Application;
 public class VocalFlowApplication extends Application {
     private static VocalFlowApplication instance;
     private AutoInteractionTracker interactionTracker;
+    private NetworkClient networkClient;
 
     @Override
     public void onCreate() {
         super.onCreate();
         instance = this;
         
+        // Shared HTTP client and background executor for all network calls
+        networkClient = new NetworkClient(this);
+        
         // Initialize CurrentActivityHolder
         CurrentActivityHolder.init(this);
         
@@ -18,6 +22,9 @@ public class VocalFlowApplication extends Application {
         interactionTracker = AutoInteractionTracker.getInstance();
         interactionTracker.init(this);
         
+        // Replay intents that were never uploaded in a previous run
+        IntentUploader.getInstance().init(this, networkClient.getHttpClient());
+        
         // Initialize replay manager singleton
         InteractionReplayManager.getInstance(this);
     }
@@ -26,6 +33,10 @@ public class VocalFlowApplication extends Application {
         return interactionTracker;
     }
 
+    public static NetworkClient getNetworkClient() {
+        return instance.networkClient;
+    }
+
     public static InteractionReplayManager getReplayManager() {
         return InteractionReplayManager.getInstance(instance);
     }
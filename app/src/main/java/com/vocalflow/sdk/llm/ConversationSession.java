@@ -0,0 +1,203 @@
+package com.vocalflow.sdk.llm;
+
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Multi-turn context for {@link LLMService}, kept within a token budget.
+ *
+ * Each turn is serialized to its JSON message once, when it is added, and the
+ * request body up to the end of the history is kept as a ready-made prefix, so
+ * a new turn only appends its own message instead of rebuilding the body.
+ * Token counts are estimated locally (see {@link #estimateTokens}). When the
+ * history would go over the budget, the oldest exchanges are dropped and the
+ * questions they asked are kept as a one-line note after the system prompt, so
+ * the prompt size stays flat however long the conversation runs.
+ *
+ * Methods are synchronized; a session can be used from the main thread and
+ * OkHttp's threads.
+ */
+public class ConversationSession {
+    // Role markers and separators the API adds around every message
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int MAX_SUMMARY_TOKENS = 150;
+    private static final String SUMMARY_PREFIX = "Earlier in this conversation the user asked: ";
+
+    private final String header;
+    private final String systemMessage;
+    private final int systemTokens;
+    private final int tokenBudget;
+    private final ArrayDeque<Turn> turns = new ArrayDeque<>();
+    // Questions of dropped exchanges, oldest first
+    private final ArrayDeque<String> summary = new ArrayDeque<>();
+    private int historyTokens = 0;
+    private int summaryTokens = 0;
+    private String summaryMessage;
+    // Header, system prompt, summary and history, ending after the last message; null when stale
+    private StringBuilder prefix;
+
+    private static final class Turn {
+        final String user;
+        final String message;
+        final int tokens;
+
+        Turn(String user, String message, int tokens) {
+            this.user = user;
+            this.message = message;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * @param header the request body fields other than messages, e.g. {@code "model":"gpt-3.5-turbo","temperature":0.7}
+     * @param tokenBudget the most tokens the messages of one request may take, including the new user input
+     */
+    ConversationSession(String header, String systemPrompt, int tokenBudget) {
+        this.header = header;
+        this.systemMessage = message("system", systemPrompt);
+        this.systemTokens = estimateTokens(systemPrompt) + MESSAGE_OVERHEAD_TOKENS;
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * Estimates how many tokens {@code text} encodes to, without a vocabulary.
+     *
+     * Common words are a single token and longer ones split about every four
+     * characters; punctuation is a token of its own. This tracks BPE tokenizers
+     * closely enough on English to keep a budget, and errs on the high side.
+     */
+    public static int estimateTokens(String text) {
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength++;
+                continue;
+            }
+            if (wordLength > 0) {
+                tokens += 1 + (wordLength - 1) / 4;
+                wordLength = 0;
+            }
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        if (wordLength > 0) {
+            tokens += 1 + (wordLength - 1) / 4;
+        }
+        return tokens;
+    }
+
+    /**
+     * Builds the request body for the next turn: the history so far followed by {@code userInput}.
+     */
+    public synchronized String buildRequestBody(String userInput, boolean stream) {
+        trimToFit(estimateTokens(userInput) + MESSAGE_OVERHEAD_TOKENS);
+        if (prefix == null) {
+            prefix = new StringBuilder("{").append(header).append(",\"messages\":[").append(systemMessage);
+            if (summaryMessage != null) {
+                prefix.append(',').append(summaryMessage);
+            }
+            for (Turn turn : turns) {
+                prefix.append(',').append(turn.message);
+            }
+        }
+        String userMessage = message("user", userInput);
+        return new StringBuilder(prefix.length() + userMessage.length() + 20)
+            .append(prefix).append(',').append(userMessage).append(']')
+            .append(stream ? ",\"stream\":true}" : "}")
+            .toString();
+    }
+
+    /**
+     * Records a completed exchange. Exchanges that failed are simply not added.
+     */
+    public synchronized void addExchange(String userInput, String response) {
+        String message = message("user", userInput) + "," + message("assistant", response);
+        int tokens = estimateTokens(userInput) + estimateTokens(response) + 2 * MESSAGE_OVERHEAD_TOKENS;
+        turns.addLast(new Turn(userInput, message, tokens));
+        historyTokens += tokens;
+        if (prefix != null) {
+            prefix.append(',').append(message);
+        }
+    }
+
+    /**
+     * Estimated tokens of the system prompt, summary and history.
+     */
+    public synchronized int getPromptTokens() {
+        return systemTokens + summaryTokens + historyTokens;
+    }
+
+    public synchronized int getTurnCount() {
+        return turns.size();
+    }
+
+    public synchronized List<String> getUserInputs() {
+        List<String> inputs = new ArrayList<>(turns.size());
+        for (Turn turn : turns) {
+            inputs.add(turn.user);
+        }
+        return inputs;
+    }
+
+    public synchronized void clear() {
+        turns.clear();
+        summary.clear();
+        historyTokens = 0;
+        summaryTokens = 0;
+        summaryMessage = null;
+        prefix = null;
+    }
+
+    private void trimToFit(int pendingTokens) {
+        boolean trimmed = false;
+        while (!turns.isEmpty() && getPromptTokens() + pendingTokens > tokenBudget) {
+            Turn dropped = turns.removeFirst();
+            historyTokens -= dropped.tokens;
+            summary.addLast(dropped.user);
+            trimmed = true;
+            updateSummary();
+        }
+        if (trimmed) {
+            prefix = null;
+        }
+    }
+
+    private void updateSummary() {
+        // The summary has its own small budget; the oldest questions go first
+        int maxTokens = Math.min(MAX_SUMMARY_TOKENS, tokenBudget / 4);
+        int tokens = estimateTokens(SUMMARY_PREFIX) + MESSAGE_OVERHEAD_TOKENS;
+        for (String question : summary) {
+            tokens += estimateTokens(question) + 1;
+        }
+        Iterator<String> oldest = summary.iterator();
+        while (tokens > maxTokens && oldest.hasNext()) {
+            tokens -= estimateTokens(oldest.next()) + 1;
+            oldest.remove();
+        }
+        if (summary.isEmpty()) {
+            summaryMessage = null;
+            summaryTokens = 0;
+            return;
+        }
+        StringBuilder text = new StringBuilder(SUMMARY_PREFIX);
+        for (String question : summary) {
+            if (text.length() > SUMMARY_PREFIX.length()) {
+                text.append("; ");
+            }
+            text.append(question);
+        }
+        summaryMessage = message("system", text.toString());
+        summaryTokens = tokens;
+    }
+
+    private static String message(String role, String content) {
+        return "{\"role\":\"" + role + "\",\"content\":" + JSONObject.quote(content) + "}";
+    }
+}
@@ -0,0 +1,61 @@
+package com.vocalflow.sdk.llm;
+
+/**
+ * Maps a spoken command to one of the intents the app already knows how to
+ * carry out, so it can be handled without a network round trip.
+ *
+ * An intent is either the text of a recorded flow (its key in the interaction
+ * cache) or a screen to open, written as {@link #SCREEN_INTENT_PREFIX} followed
+ * by a screen name from ScreenMapper. Resolvers are consulted first; the remote
+ * APIs are only used when they return null or a low confidence.
+ */
+public interface IntentResolver {
+    String SCREEN_INTENT_PREFIX = "screen:";
+
+    final class Resolution {
+        public final String intent;
+        // From 0 to 1
+        public final float confidence;
+        // True if the command is known to mean the intent, e.g. it matched a fixed grammar,
+        // rather than being judged similar to commands that did
+        public final boolean exact;
+
+        public Resolution(String intent, float confidence) {
+            this(intent, confidence, false);
+        }
+
+        public Resolution(String intent, float confidence, boolean exact) {
+            this.intent = intent;
+            this.confidence = confidence;
+            this.exact = exact;
+        }
+
+        /**
+         * The screen to open, or null if the intent is a recorded flow.
+         */
+        public String getScreenName() {
+            return intent.startsWith(SCREEN_INTENT_PREFIX) ? intent.substring(SCREEN_INTENT_PREFIX.length()) : null;
+        }
+
+        @Override
+        public String toString() {
+            return intent + " (" + confidence + ")";
+        }
+    }
+
+    /**
+     * Returns the most likely intent for the command, or null if nothing fits.
+     * Called on the main thread, so it must not block.
+     */
+    Resolution resolve(String command);
+
+    /**
+     * Records that {@code command} meant {@code intent}, e.g. once its flow has been recorded.
+     */
+    default void learn(String command, String intent) {}
+
+    /**
+     * Stops resolving to {@code intent}, e.g. because its flow was evicted.
+     */
+    default void forget(String intent) {}
+}
@@ -0,0 +1,291 @@
+package com.vocalflow.sdk.llm;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Memoizes LLM responses so repeated prompts skip the network and the API tokens.
+ *
+ * Keys are a SHA-256 of the model, the system prompt and the user input with
+ * case and whitespace normalized. Entries live in an in-memory LRU and, if a
+ * directory is given, also on disk (one file per key) so they survive restarts.
+ * Every entry carries its own expiry.
+ *
+ * The cache also coalesces requests: while a response for a key is being
+ * fetched, further requests for the same key wait for that call instead of
+ * sending their own.
+ */
+public class LLMResponseCache {
+    private static final String TAG = "LLMResponseCache";
+    private static final int FILE_VERSION = 1;
+    private static final int MAX_MEMORY_ENTRIES = 200;
+    private static final int MAX_DISK_ENTRIES = 1000;
+
+    private final File directory;
+    private final ExecutorService diskExecutor;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    };
+    // Callers waiting on the request in flight for each key; the first one sent it
+    private final Map<String, List<LLMService.LLMResponseCallback>> inFlight = new HashMap<>();
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+
+    private static final class Entry {
+        final String response;
+        final long expiresAt;
+
+        Entry(String response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    /**
+     * A cache held in memory only.
+     */
+    public LLMResponseCache() {
+        this(null);
+    }
+
+    /**
+     * A cache that also keeps its entries in {@code directory}, or in memory only if it is null.
+     */
+    public LLMResponseCache(File directory) {
+        this.directory = directory;
+        this.diskExecutor = directory != null ? Executors.newSingleThreadExecutor() : null;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Error creating response cache directory: " + directory);
+        }
+    }
+
+    public static String key(String model, String systemPrompt, String userInput) {
+        String normalized = userInput.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Separators keep ("ab", "c") and ("a", "bc") from colliding
+            byte[] hash = digest.digest((model + '\u0000' + systemPrompt + '\u0000' + normalized)
+                .getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format(Locale.US, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the response held in memory for the key, or null on a miss.
+     * Does not touch the disk, so it is safe to call from the main thread.
+     */
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            entries.remove(key);
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    /**
+     * Looks the key up in memory and then on disk. Disk reads block, so call
+     * this off the main thread. Counts a miss if neither has it.
+     */
+    public String load(String key) {
+        String response = get(key);
+        if (response != null) {
+            return response;
+        }
+        Entry entry = directory != null ? read(key) : null;
+        synchronized (this) {
+            if (entry == null || entry.isExpired()) {
+                misses++;
+                return null;
+            }
+            diskHits++;
+            entries.put(key, entry);
+        }
+        return entry.response;
+    }
+
+    /**
+     * Caches the response for {@code ttlMs}. After {@link #shutdown} it is only
+     * kept in memory.
+     */
+    public synchronized void put(String key, String response, long ttlMs) {
+        Entry entry = new Entry(response, System.currentTimeMillis() + ttlMs);
+        entries.put(key, entry);
+        if (directory != null && !diskExecutor.isShutdown()) {
+            diskExecutor.execute(() -> write(key, entry));
+        }
+    }
+
+    /**
+     * Registers a caller for the key. Returns true if no request is in flight
+     * for it, in which case the caller has to send one and report the outcome
+     * with {@link #complete} or {@link #fail}. Otherwise the callback is
+     * answered when the request already in flight finishes.
+     */
+    synchronized boolean join(String key, LLMService.LLMResponseCallback callback) {
+        List<LLMService.LLMResponseCallback> waiting = inFlight.get(key);
+        if (waiting != null) {
+            coalesced++;
+            waiting.add(callback);
+            return false;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        inFlight.put(key, waiting);
+        return true;
+    }
+
+    void complete(String key, String response) {
+        for (LLMService.LLMResponseCallback callback : takeWaiting(key)) {
+            callback.onResponse(response);
+        }
+    }
+
+    void fail(String key, String error) {
+        for (LLMService.LLMResponseCallback callback : takeWaiting(key)) {
+            callback.onError(error);
+        }
+    }
+
+    private synchronized List<LLMService.LLMResponseCallback> takeWaiting(String key) {
+        List<LLMService.LLMResponseCallback> waiting = inFlight.remove(key);
+        return waiting != null ? waiting : new ArrayList<>();
+    }
+
+    /**
+     * Lookups answered from memory.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Lookups that missed memory but were answered from disk.
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Requests that were answered by another identical request already in flight.
+     */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        if (directory != null && !diskExecutor.isShutdown()) {
+            diskExecutor.execute(() -> {
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops writing to disk; responses still arriving are kept in memory only.
+     */
+    public synchronized void shutdown() {
+        if (diskExecutor != null) {
+            diskExecutor.shutdown();
+        }
+    }
+
+    private Entry read(String key) {
+        File file = new File(directory, key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                return null;
+            }
+            long expiresAt = in.readLong();
+            byte[] response = new byte[in.readInt()];
+            in.readFully(response);
+            return new Entry(new String(response, StandardCharsets.UTF_8), expiresAt);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading cached response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String key, Entry entry) {
+        File temp = new File(directory, key + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            byte[] response = entry.response.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(entry.expiresAt);
+            out.writeInt(response.length);
+            out.write(response);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing cached response: " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(new File(directory, key))) {
+            Log.e(TAG, "Error replacing cached response file");
+            return;
+        }
+        trimDisk();
+    }
+
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= MAX_DISK_ENTRIES) {
+            return;
+        }
+        // Oldest written first
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_DISK_ENTRIES; i++) {
+            files[i].delete();
+        }
+    }
+}
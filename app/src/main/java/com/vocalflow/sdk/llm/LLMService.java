@@ -6,101 +6,371 @@ import okhttp3.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import okio.BufferedSource;
 
 public class LLMService {
     private static final String TAG = "LLMService";
     private static final String OPENAI_API_URL = "https://api.openai.com/v1/chat/completions";
+    private static final String MODEL = "gpt-3.5-turbo";
+    private static final String SYSTEM_PROMPT = "You are a helpful AI assistant named Pandora. Keep your responses concise and friendly.";
+    private static final double TEMPERATURE = 0.7;
+    private static final int MAX_TOKENS = 1000;
+    public static final long DEFAULT_CACHE_TTL_MS = 60 * 60 * 1000L;
+    // Leaves room for the response within a 4k context
+    public static final int DEFAULT_CONVERSATION_TOKEN_BUDGET = 3000;
     private final OkHttpClient client;
     private final String apiKey;
     private final Context context;
+    private final String apiUrl;
+    private volatile LLMResponseCache responseCache;
+    private volatile Executor cacheLookupExecutor;
 
     public interface LLMResponseCallback {
         void onResponse(String response);
         void onError(String error);
     }
 
-    public LLMService(Context context, String apiKey) {
+    /**
+     * Receives a streamed response as it is generated. Called on an OkHttp
+     * thread; nothing is reported after {@link #onComplete} or {@link #onError}.
+     */
+    public interface LLMStreamCallback {
+        /**
+         * A complete sentence (or sentence-sized piece of a long one), ready to be spoken.
+         */
+        void onSentence(String sentence);
+        void onComplete(String response);
+        void onError(String error);
+    }
+
+    public LLMService(Context context, String apiKey, OkHttpClient client) {
+        this(context, apiKey, client, OPENAI_API_URL);
+    }
+
+    /**
+     * Sends requests to {@code apiUrl} instead of OpenAI, e.g. a proxy or a local server.
+     */
+    public LLMService(Context context, String apiKey, OkHttpClient client, String apiUrl) {
         this.context = context;
         this.apiKey = apiKey;
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(30, TimeUnit.SECONDS)
+        this.client = client;
+        this.apiUrl = apiUrl;
+    }
+
+    private Request buildRequest(String userInput, boolean stream) throws Exception {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", MODEL);
+
+        JSONArray messages = new JSONArray();
+        JSONObject systemMessage = new JSONObject();
+        systemMessage.put("role", "system");
+        systemMessage.put("content", SYSTEM_PROMPT);
+        messages.put(systemMessage);
+
+        JSONObject userMessage = new JSONObject();
+        userMessage.put("role", "user");
+        userMessage.put("content", userInput);
+        messages.put(userMessage);
+
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", TEMPERATURE);
+        requestBody.put("max_tokens", MAX_TOKENS);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+
+        return newRequest(requestBody.toString());
+    }
+
+    private Request newRequest(String body) {
+        Log.d(TAG, "Request body: " + body);
+
+        return new Request.Builder()
+            .url(apiUrl)
+            .addHeader("Content-Type", "application/json")
+            .addHeader("Authorization", "Bearer " + apiKey)
+            .post(RequestBody.create(body, MediaType.parse("application/json")))
             .build();
     }
 
+    /**
+     * Starts a conversation that remembers earlier turns, with the default token budget.
+     */
+    public ConversationSession newSession() {
+        return newSession(DEFAULT_CONVERSATION_TOKEN_BUDGET);
+    }
+
+    /**
+     * Starts a conversation whose prompts stay within {@code tokenBudget} tokens.
+     */
+    public ConversationSession newSession(int tokenBudget) {
+        String header = "\"model\":" + JSONObject.quote(MODEL)
+            + ",\"temperature\":" + TEMPERATURE
+            + ",\"max_tokens\":" + MAX_TOKENS;
+        return new ConversationSession(header, SYSTEM_PROMPT, tokenBudget);
+    }
+
+    /**
+     * Answers repeated prompts from {@code cache} instead of the API, or stops
+     * caching if it is null. Its disk tier is read on {@code lookupExecutor},
+     * which is required with a cache.
+     */
+    public void setResponseCache(LLMResponseCache cache, Executor lookupExecutor) {
+        if (cache != null) {
+            if (lookupExecutor == null) {
+                throw new IllegalArgumentException("A response cache needs an executor for disk lookups");
+            }
+            // Set before the cache, so a request that sees the cache also sees an executor
+            this.cacheLookupExecutor = lookupExecutor;
+        }
+        this.responseCache = cache;
+    }
+
+    public LLMResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     public void getResponse(String userInput, LLMResponseCallback callback) {
+        getResponse(userInput, DEFAULT_CACHE_TTL_MS, callback);
+    }
+
+    /**
+     * Like {@link #getResponse(String, LLMResponseCallback)}, caching the response
+     * for {@code cacheTtlMs}. A response already in memory is passed to the
+     * callback before this returns; otherwise it is called on a background thread.
+     */
+    public void getResponse(String userInput, long cacheTtlMs, LLMResponseCallback callback) {
+        LLMResponseCache cache = responseCache;
+        if (cache == null) {
+            sendRequest(userInput, callback);
+            return;
+        }
+        String key = LLMResponseCache.key(MODEL, SYSTEM_PROMPT, userInput);
+        String cached = cache.get(key);
+        if (cached != null) {
+            Log.d(TAG, "Cached response for: " + userInput);
+            callback.onResponse(cached);
+            return;
+        }
+        if (!cache.join(key, callback)) {
+            Log.d(TAG, "Identical request already in flight, waiting for it: " + userInput);
+            return;
+        }
+        // The disk tier has to be read off the calling thread
+        try {
+            cacheLookupExecutor.execute(() -> {
+                try {
+                    loadOrSend(cache, key, userInput, cacheTtlMs);
+                } catch (RuntimeException e) {
+                    // Nobody else will finish the request, so let go of everyone waiting on it
+                    Log.e(TAG, "Error looking up cached response: " + e.getMessage());
+                    cache.fail(key, "Cache lookup failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Cache lookup rejected: " + e.getMessage());
+            cache.fail(key, "Cache lookup rejected: " + e.getMessage());
+        }
+    }
+
+    private void loadOrSend(LLMResponseCache cache, String key, String userInput, long cacheTtlMs) {
+        String stored = cache.load(key);
+        if (stored != null) {
+            Log.d(TAG, "Cached response for: " + userInput);
+            cache.complete(key, stored);
+            return;
+        }
+        sendRequest(userInput, new LLMResponseCallback() {
+            @Override
+            public void onResponse(String response) {
+                cache.put(key, response, cacheTtlMs);
+                cache.complete(key, response);
+            }
+
+            @Override
+            public void onError(String error) {
+                cache.fail(key, error);
+            }
+        });
+    }
+
+    /**
+     * Answers {@code userInput} in the context of the conversation so far, and
+     * adds the exchange to it once the response arrives. Responses in a
+     * conversation depend on its history, so they are never cached.
+     */
+    public void getResponse(ConversationSession session, String userInput, LLMResponseCallback callback) {
+        Log.d(TAG, "Sending request to LLM (turn " + (session.getTurnCount() + 1) + "): " + userInput);
+        send(newRequest(session.buildRequestBody(userInput, false)), new LLMResponseCallback() {
+            @Override
+            public void onResponse(String response) {
+                session.addExchange(userInput, response);
+                callback.onResponse(response);
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    private void sendRequest(String userInput, LLMResponseCallback callback) {
         Log.d(TAG, "Sending request to LLM: " + userInput);
+        Request request;
         try {
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("model", "gpt-3.5-turbo");
-            
-            JSONArray messages = new JSONArray();
-            JSONObject systemMessage = new JSONObject();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", "You are a helpful AI assistant named Pandora. Keep your responses concise and friendly.");
-            messages.put(systemMessage);
-            
-            JSONObject userMessage = new JSONObject();
-            userMessage.put("role", "user");
-            userMessage.put("content", userInput);
-            messages.put(userMessage);
-            
-            requestBody.put("messages", messages);
-            requestBody.put("temperature", 0.7);
-            requestBody.put("max_tokens", 1000);
-
-            Log.d(TAG, "Request body: " + requestBody.toString());
-
-            Request request = new Request.Builder()
-                .url(OPENAI_API_URL)
-                .addHeader("Content-Type", "application/json")
-                .addHeader("Authorization", "Bearer " + apiKey)
-                .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
-                .build();
-
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    Log.e(TAG, "API request failed", e);
+            request = buildRequest(userInput, false);
+        } catch (Exception e) {
+            Log.e(TAG, "Error creating API request", e);
+            callback.onError(e.getMessage());
+            return;
+        }
+        send(request, callback);
+    }
+
+    private void send(Request request, LLMResponseCallback callback) {
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.e(TAG, "API request failed", e);
+                callback.onError(e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                if (!response.isSuccessful()) {
+                    String error = "API request failed with code: " + response.code();
+                    Log.e(TAG, error);
+                    callback.onError(error);
+                    return;
+                }
+
+                try {
+                    String responseBody = response.body().string();
+                    Log.d(TAG, "Raw API response: " + responseBody);
+                    JSONObject jsonResponse = new JSONObject(responseBody);
+                    JSONArray choices = jsonResponse.getJSONArray("choices");
+                    if (choices.length() > 0) {
+                        String content = choices.getJSONObject(0)
+                            .getJSONObject("message")
+                            .getString("content");
+                        Log.d(TAG, "Extracted response: " + content);
+                        callback.onResponse(content);
+                    } else {
+                        String error = "No choices in API response";
+                        Log.e(TAG, error);
+                        callback.onError(error);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Error parsing API response", e);
                     callback.onError(e.getMessage());
                 }
+            }
+        });
+    }
+
+    /**
+     * Streams the response as server-sent events, reporting each sentence as
+     * soon as it is complete so it can be spoken while the rest is still being
+     * generated. Returns the call, which can be cancelled to stop the stream, or
+     * null if the request could not be built.
+     */
+    public Call streamResponse(String userInput, LLMStreamCallback callback) {
+        Log.d(TAG, "Streaming request to LLM: " + userInput);
+        Request request;
+        try {
+            request = buildRequest(userInput, true);
+        } catch (Exception e) {
+            Log.e(TAG, "Error creating API request", e);
+            callback.onError(e.getMessage());
+            return null;
+        }
+        return stream(request, callback);
+    }
+
+    /**
+     * Streams the answer to {@code userInput} in the context of the conversation
+     * so far, adding the exchange to it once the stream completes.
+     */
+    public Call streamResponse(ConversationSession session, String userInput, LLMStreamCallback callback) {
+        Log.d(TAG, "Streaming request to LLM (turn " + (session.getTurnCount() + 1) + "): " + userInput);
+        return stream(newRequest(session.buildRequestBody(userInput, true)), new LLMStreamCallback() {
+            @Override
+            public void onSentence(String sentence) {
+                callback.onSentence(sentence);
+            }
+
+            @Override
+            public void onComplete(String response) {
+                session.addExchange(userInput, response);
+                callback.onComplete(response);
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    private Call stream(Request request, LLMStreamCallback callback) {
+        Call call = client.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.e(TAG, "API request failed", e);
+                callback.onError(e.getMessage());
+            }
 
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response body = response) {
                     if (!response.isSuccessful()) {
                         String error = "API request failed with code: " + response.code();
                         Log.e(TAG, error);
                         callback.onError(error);
                         return;
                     }
-
-                    try {
-                        String responseBody = response.body().string();
-                        Log.d(TAG, "Raw API response: " + responseBody);
-                        JSONObject jsonResponse = new JSONObject(responseBody);
-                        JSONArray choices = jsonResponse.getJSONArray("choices");
-                        if (choices.length() > 0) {
-                            String content = choices.getJSONObject(0)
-                                .getJSONObject("message")
-                                .getString("content");
-                            Log.d(TAG, "Extracted response: " + content);
-                            callback.onResponse(content);
-                        } else {
-                            String error = "No choices in API response";
-                            Log.e(TAG, error);
-                            callback.onError(error);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error parsing API response", e);
-                        callback.onError(e.getMessage());
-                    }
+                    readStream(body.body().source(), callback);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error reading API stream", e);
+                    callback.onError(e.getMessage());
                 }
-            });
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating API request", e);
-            callback.onError(e.getMessage());
+            }
+        });
+        return call;
+    }
+
+    private void readStream(BufferedSource source, LLMStreamCallback callback) throws Exception {
+        StringBuilder response = new StringBuilder();
+        SentenceChunker chunker = new SentenceChunker();
+        SentenceChunker.Listener sentences = callback::onSentence;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            // Blank lines separate events; other fields such as "event:" are not used
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring("data:".length()).trim();
+            if (data.equals("[DONE]")) {
+                break;
+            }
+            JSONArray choices = new JSONObject(data).optJSONArray("choices");
+            if (choices == null || choices.length() == 0) {
+                continue;
+            }
+            JSONObject delta = choices.getJSONObject(0).optJSONObject("delta");
+            if (delta == null || delta.isNull("content")) {
+                continue;
+            }
+            String content = delta.getString("content");
+            response.append(content);
+            chunker.append(content, sentences);
         }
+        chunker.flush(sentences);
+        Log.d(TAG, "Streamed response: " + response);
+        callback.onComplete(response.toString());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,232 @@
+package com.vocalflow.sdk.llm;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves commands on the device, without any network call.
+ *
+ * Two stages are tried in order. First, a grammar of regular expressions
+ * matched against the normalized command ("go to bills"). A rule that matches
+ * resolves with full confidence. Second, a multinomial naive Bayes model over
+ * hashed word unigrams and bigrams, trained from the commands of recorded
+ * flows. This is a linear model in log space, so scoring costs one table
+ * lookup per feature and intent.
+ *
+ * The model's confidence is its posterior scaled by how many of the command's
+ * words it has seen for that intent. Otherwise a command about something new
+ * entirely would still be confidently given to whichever intent is least unlike it.
+ * The posterior is taken against a background class as well, which spreads its
+ * likelihood evenly over the vocabulary and has the prior of a single example.
+ * Without it, a model that has learned one intent would be certain of it for
+ * every command.
+ *
+ * Only rule matches are {@link Resolution#exact}. A learned intent is a guess
+ * and callers should confirm it before acting on it.
+ *
+ * Methods are synchronized; intents are learned from the cache's disk thread
+ * and resolved on the main thread.
+ */
+public class LocalIntentClassifier implements IntentResolver {
+    private static final String TAG = "LocalIntentClassifier";
+    private static final int NUM_BUCKETS = 1 << 16;
+    private static final double SMOOTHING = 0.5;
+    private static final int MAX_INTENTS = 500;
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "an", "the", "my", "me", "i", "to", "for", "of", "please", "now",
+        "can", "could", "would", "you", "want", "like", "just", "and"
+    ));
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, IntentModel> intents = new HashMap<>();
+    // How many intents have seen each feature bucket; its size is the vocabulary size
+    private final Map<Integer, Integer> vocabulary = new HashMap<>();
+    private int totalExamples = 0;
+
+    private static final class Rule {
+        final Pattern pattern;
+        final String intent;
+
+        Rule(Pattern pattern, String intent) {
+            this.pattern = pattern;
+            this.intent = intent;
+        }
+    }
+
+    private static final class IntentModel {
+        final String intent;
+        final Map<Integer, Integer> counts = new HashMap<>();
+        final Set<String> examples = new HashSet<>();
+        int totalCount = 0;
+
+        IntentModel(String intent) {
+            this.intent = intent;
+        }
+    }
+
+    /**
+     * Resolves every command fully matching {@code regex} to {@code intent}.
+     * The regex is matched against the command in lower case with punctuation
+     * removed and words separated by single spaces.
+     */
+    public synchronized void addRule(String regex, String intent) {
+        rules.add(new Rule(Pattern.compile(regex), intent));
+    }
+
+    @Override
+    public synchronized Resolution resolve(String command) {
+        String[] words = words(command);
+        String normalized = String.join(" ", words);
+        for (Rule rule : rules) {
+            if (rule.pattern.matcher(normalized).matches()) {
+                return new Resolution(rule.intent, 1f, true);
+            }
+        }
+        if (intents.isEmpty()) {
+            return null;
+        }
+
+        List<String> unigrams = contentWords(words);
+        int[] features = features(unigrams);
+        if (features.length == 0) {
+            return null;
+        }
+        double vocabularySize = vocabulary.size() + 1;
+        IntentModel best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        double[] scores = new double[intents.size()];
+        int i = 0;
+        for (IntentModel model : intents.values()) {
+            double score = Math.log((double) model.examples.size() / (totalExamples + 1));
+            double denominator = Math.log(model.totalCount + SMOOTHING * vocabularySize);
+            for (int feature : features) {
+                Integer count = model.counts.get(feature);
+                score += Math.log((count != null ? count : 0) + SMOOTHING) - denominator;
+            }
+            scores[i++] = score;
+            if (score > bestScore) {
+                bestScore = score;
+                best = model;
+            }
+        }
+        // Background class: one example's prior, uniform likelihood over the vocabulary
+        double backgroundScore = Math.log(1.0 / (totalExamples + 1)) - features.length * Math.log(vocabularySize);
+        double maxScore = Math.max(bestScore, backgroundScore);
+        // Posterior of the best intent, normalized in log space to avoid underflow
+        double sum = Math.exp(backgroundScore - maxScore);
+        for (double score : scores) {
+            sum += Math.exp(score - maxScore);
+        }
+        double posterior = Math.exp(bestScore - maxScore) / sum;
+
+        int known = 0;
+        for (String word : unigrams) {
+            if (best.counts.containsKey(bucket("w:" + word))) {
+                known++;
+            }
+        }
+        float confidence = (float) (posterior * known / unigrams.size());
+        return new Resolution(best.intent, confidence);
+    }
+
+    @Override
+    public synchronized void learn(String command, String intent) {
+        List<String> unigrams = contentWords(words(command));
+        if (unigrams.isEmpty()) {
+            return;
+        }
+        IntentModel model = intents.get(intent);
+        if (model == null) {
+            if (intents.size() >= MAX_INTENTS) {
+                Log.w(TAG, "Too many intents, not learning: " + intent);
+                return;
+            }
+            model = new IntentModel(intent);
+            intents.put(intent, model);
+        }
+        if (!model.examples.add(String.join(" ", unigrams))) {
+            return;
+        }
+        totalExamples++;
+        for (int feature : features(unigrams)) {
+            Integer count = model.counts.get(feature);
+            if (count == null) {
+                count = 0;
+                Integer seenBy = vocabulary.get(feature);
+                vocabulary.put(feature, seenBy != null ? seenBy + 1 : 1);
+            }
+            model.counts.put(feature, count + 1);
+            model.totalCount++;
+        }
+    }
+
+    @Override
+    public synchronized void forget(String intent) {
+        IntentModel model = intents.remove(intent);
+        if (model == null) {
+            return;
+        }
+        totalExamples -= model.examples.size();
+        for (int feature : model.counts.keySet()) {
+            int seenBy = vocabulary.get(feature) - 1;
+            if (seenBy == 0) {
+                vocabulary.remove(feature);
+            } else {
+                vocabulary.put(feature, seenBy);
+            }
+        }
+    }
+
+    public synchronized int getIntentCount() {
+        return intents.size();
+    }
+
+    private static String[] words(String command) {
+        String normalized = command.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static List<String> contentWords(String[] words) {
+        List<String> content = new ArrayList<>(words.length);
+        for (String word : words) {
+            if (!STOP_WORDS.contains(word)) {
+                content.add(word);
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Distinct hashed unigram and bigram buckets of the words.
+     */
+    private static int[] features(List<String> words) {
+        Set<Integer> buckets = new HashSet<>();
+        for (int i = 0; i < words.size(); i++) {
+            buckets.add(bucket("w:" + words.get(i)));
+            if (i > 0) {
+                buckets.add(bucket("b:" + words.get(i - 1) + " " + words.get(i)));
+            }
+        }
+        int[] features = new int[buckets.size()];
+        int i = 0;
+        for (int bucket : buckets) {
+            features[i++] = bucket;
+        }
+        return features;
+    }
+
+    private static int bucket(String feature) {
+        int hash = feature.hashCode();
+        // Spread the bits before masking; String hashes of short keys cluster in the low bits
+        hash ^= hash >>> 16;
+        return hash & (NUM_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,73 @@
+package com.vocalflow.sdk.llm;
+
+/**
+ * Cuts streamed text into sentence-sized chunks for speech output.
+ *
+ * A chunk ends at sentence punctuation once the next character shows the
+ * sentence is really over, so "3.5" or a trailing "..." still being streamed
+ * are not split. Very short sentences are held back and joined to the next one,
+ * and a run-on without punctuation is cut at a comma or space so speech never
+ * waits too long on one chunk.
+ */
+class SentenceChunker {
+    private static final int MIN_CHUNK_CHARS = 20;
+    private static final int MAX_CHUNK_CHARS = 250;
+
+    private final StringBuilder buffer = new StringBuilder();
+    // Everything before this index has already been scanned for a sentence end
+    private int scanned = 0;
+
+    interface Listener {
+        void onChunk(String chunk);
+    }
+
+    /**
+     * Appends streamed text, reporting every chunk it completes.
+     */
+    void append(String text, Listener listener) {
+        buffer.append(text);
+        int end;
+        while ((end = findChunkEnd()) > 0) {
+            emit(end, listener);
+        }
+    }
+
+    /**
+     * Reports whatever is left once the stream has ended.
+     */
+    void flush(Listener listener) {
+        if (buffer.length() > 0) {
+            emit(buffer.length(), listener);
+        }
+    }
+
+    private int findChunkEnd() {
+        // The character after a terminator has to be seen before cutting
+        for (int i = scanned; i < buffer.length() - 1; i++) {
+            char c = buffer.charAt(i);
+            if ((c == '.' || c == '!' || c == '?' || c == '\n')
+                    && Character.isWhitespace(buffer.charAt(i + 1))
+                    && i + 1 >= MIN_CHUNK_CHARS) {
+                return i + 1;
+            }
+        }
+        scanned = Math.max(0, buffer.length() - 1);
+        if (buffer.length() < MAX_CHUNK_CHARS) {
+            return 0;
+        }
+        int cut = buffer.lastIndexOf(", ", MAX_CHUNK_CHARS);
+        if (cut < MIN_CHUNK_CHARS) {
+            cut = buffer.lastIndexOf(" ", MAX_CHUNK_CHARS);
+        }
+        return cut < MIN_CHUNK_CHARS ? MAX_CHUNK_CHARS : cut + 1;
+    }
+
+    private void emit(int end, Listener listener) {
+        String chunk = buffer.substring(0, end).trim();
+        buffer.delete(0, end);
+        scanned = 0;
+        if (!chunk.isEmpty()) {
+            listener.onChunk(chunk);
+        }
+    }
+}
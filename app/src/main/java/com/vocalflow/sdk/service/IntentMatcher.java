@@ -0,0 +1,244 @@
+package com.vocalflow.sdk.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index over normalized intent texts for finding near-duplicate commands.
+ *
+ * Texts are split into tokens with filler words removed, and candidates are
+ * scored by IDF-weighted Jaccard similarity, so rare words such as "electricity"
+ * count for more than words every intent shares such as "pay" or "bill".
+ * Only intents sharing at least one token with the query are scored.
+ *
+ * A candidate is only accepted if the words it does not share with the query
+ * are all more common than the rarest word they do share. "pay debit card bill"
+ * scores well against "pay credit card bill", but the word that differs is the
+ * one that matters, so it is not a match.
+ *
+ * Not thread-safe; callers must synchronize.
+ */
+class IntentMatcher {
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "an", "the", "my", "me", "i", "to", "for", "of", "please", "now",
+        "can", "could", "would", "you", "want", "like", "just", "and"
+    ));
+
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<String> docKeys = new ArrayList<>();
+    private final List<int[]> docTokens = new ArrayList<>();
+    private final List<Integer> freeIds = new ArrayList<>();
+    private final Map<String, Integer> tokenIds = new HashMap<>();
+    private final List<List<Integer>> postings = new ArrayList<>();
+    // IDF per token ID, recomputed lazily after the index changes
+    private float[] idf = new float[16];
+    private int modCount = 0;
+    private int idfModCount = -1;
+    // Scratch space reused across queries, indexed by doc ID
+    private float[] overlap = new float[16];
+    private int[] touched = new int[16];
+    private int liveDocs = 0;
+
+    static final class Match {
+        final String key;
+        final float score;
+
+        Match(String key, float score) {
+            this.key = key;
+            this.score = score;
+        }
+    }
+
+    static String[] tokenize(String normalized) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : normalized.split(" ")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    void add(String key) {
+        if (docIds.containsKey(key)) {
+            return;
+        }
+        String[] words = tokenize(key);
+        int[] tokens = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            Integer tokenId = tokenIds.get(words[i]);
+            if (tokenId == null) {
+                tokenId = postings.size();
+                tokenIds.put(words[i], tokenId);
+                postings.add(new ArrayList<>());
+            }
+            tokens[i] = tokenId;
+        }
+
+        int id;
+        if (freeIds.isEmpty()) {
+            id = docKeys.size();
+            docKeys.add(key);
+            docTokens.add(tokens);
+        } else {
+            id = freeIds.remove(freeIds.size() - 1);
+            docKeys.set(id, key);
+            docTokens.set(id, tokens);
+        }
+        docIds.put(key, id);
+        for (int token : tokens) {
+            postings.get(token).add(id);
+        }
+        liveDocs++;
+        modCount++;
+    }
+
+    void remove(String key) {
+        Integer id = docIds.remove(key);
+        if (id == null) {
+            return;
+        }
+        for (int token : docTokens.get(id)) {
+            postings.get(token).remove(id);
+        }
+        docKeys.set(id, null);
+        docTokens.set(id, null);
+        freeIds.add(id);
+        liveDocs--;
+        modCount++;
+    }
+
+    /**
+     * Returns the most similar indexed intent scoring at least minScore, or null.
+     */
+    Match findBest(String normalized, float minScore) {
+        String[] queryTokens = tokenize(normalized);
+        if (queryTokens.length == 0 || liveDocs == 0) {
+            return null;
+        }
+        if (overlap.length < docKeys.size()) {
+            overlap = new float[docKeys.size() * 2];
+            touched = new int[docKeys.size() * 2];
+        }
+        updateIdf();
+
+        // Words never seen before get the weight of the rarest possible token
+        float unseenWeight = (float) Math.log(1 + liveDocs);
+        float queryWeight = 0;
+        int touchedCount = 0;
+        // -1 for words not in the index
+        int[] queryIds = new int[queryTokens.length];
+        for (int q = 0; q < queryTokens.length; q++) {
+            Integer token = tokenIds.get(queryTokens[q]);
+            queryIds[q] = token != null ? token : -1;
+            if (token == null || postings.get(token).isEmpty()) {
+                queryWeight += unseenWeight;
+                continue;
+            }
+            float weight = idf[token];
+            queryWeight += weight;
+            List<Integer> docs = postings.get(token);
+            for (int i = 0; i < docs.size(); i++) {
+                int id = docs.get(i);
+                if (overlap[id] == 0) {
+                    touched[touchedCount++] = id;
+                }
+                overlap[id] += weight;
+            }
+        }
+
+        int bestId = -1;
+        float bestScore = minScore;
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            float shared = overlap[id];
+            overlap[id] = 0;
+            // The score can never exceed shared / queryWeight, so skip the full sum when that is too low
+            if (shared < bestScore * queryWeight) {
+                continue;
+            }
+            float docWeight = 0;
+            for (int token : docTokens.get(id)) {
+                docWeight += idf[token];
+            }
+            float score = shared / (queryWeight + docWeight - shared);
+            if (score >= bestScore && !differsInRareWord(queryIds, docTokens.get(id), unseenWeight)) {
+                bestScore = score;
+                bestId = id;
+            }
+        }
+        return bestId < 0 ? null : new Match(docKeys.get(bestId), bestScore);
+    }
+
+    /**
+     * True if the indexed intent {@code key} and the query are told apart by a
+     * rare word, see {@link #findBest}, or if {@code key} is not indexed.
+     */
+    boolean differsInRareWord(String normalized, String key) {
+        Integer id = docIds.get(key);
+        if (id == null) {
+            return true;
+        }
+        updateIdf();
+        String[] queryTokens = tokenize(normalized);
+        int[] queryIds = new int[queryTokens.length];
+        for (int q = 0; q < queryTokens.length; q++) {
+            Integer token = tokenIds.get(queryTokens[q]);
+            queryIds[q] = token != null ? token : -1;
+        }
+        return differsInRareWord(queryIds, docTokens.get(id), (float) Math.log(1 + liveDocs));
+    }
+
+    /**
+     * True if a word in only one of the two texts weighs at least as much as
+     * every word they share.
+     */
+    private boolean differsInRareWord(int[] queryIds, int[] doc, float unseenWeight) {
+        float heaviestShared = 0;
+        float heaviestDiffering = 0;
+        for (int token : doc) {
+            if (contains(queryIds, token)) {
+                heaviestShared = Math.max(heaviestShared, idf[token]);
+            } else {
+                heaviestDiffering = Math.max(heaviestDiffering, idf[token]);
+            }
+        }
+        for (int token : queryIds) {
+            if (token < 0) {
+                heaviestDiffering = Math.max(heaviestDiffering, unseenWeight);
+            } else if (!contains(doc, token)) {
+                heaviestDiffering = Math.max(heaviestDiffering, idf[token]);
+            }
+        }
+        return heaviestDiffering >= heaviestShared;
+    }
+
+    private static boolean contains(int[] tokens, int token) {
+        for (int t : tokens) {
+            if (t == token) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateIdf() {
+        if (idfModCount == modCount) {
+            return;
+        }
+        if (idf.length < postings.size()) {
+            idf = new float[postings.size() * 2];
+        }
+        for (int token = 0; token < postings.size(); token++) {
+            int documentFrequency = Math.max(postings.get(token).size(), 1);
+            idf[token] = (float) Math.log(1 + (double) liveDocs / documentFrequency);
+        }
+        idfModCount = modCount;
+    }
+}
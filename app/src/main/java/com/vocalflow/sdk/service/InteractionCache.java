@@ -0,0 +1,280 @@
+package com.vocalflow.sdk.service;
+
+import android.util.Log;
+
+import com.vocalflow.InteractionEvent;
+import com.vocalflow.InteractionReplayManager;
+import com.vocalflow.ReplayPlan;
+import com.vocalflow.sdk.llm.IntentResolver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LRU cache of get_interactions results keyed on normalized intent text.
+ *
+ * Entries younger than the fresh TTL are served as-is. Older entries are still
+ * served, but reported as stale so the caller can refresh them in the background.
+ * Entries past the max age count as misses. The cache is saved to disk after
+ * every change and loaded again on start.
+ *
+ * Keys are also kept in an {@link IntentMatcher} so that a command worded slightly
+ * differently from a cached one can still be answered without a network call,
+ * and taught to an {@link IntentResolver} if one is set, so it can learn the
+ * recorded intents as they come and go.
+ */
+public class InteractionCache {
+    private static final String TAG = "InteractionCache";
+    private static final int FILE_VERSION = 2;
+    private static final int MAX_ENTRIES = 1000;
+    private static final float MIN_MATCH_SCORE = 0.7f;
+    private static final long FRESH_TTL_MS = 10 * 60 * 1000L;
+    private static final long MAX_AGE_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    private final File file;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private boolean shutdown = false;
+    private final IntentMatcher matcher = new IntentMatcher();
+    private volatile IntentResolver intentResolver;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                removed(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public static final class Entry {
+        private final List<InteractionEvent> events;
+        private final long fetchedAt;
+        private volatile ReplayPlan plan;
+
+        Entry(List<InteractionEvent> events, long fetchedAt) {
+            this.events = Collections.unmodifiableList(events);
+            this.fetchedAt = fetchedAt;
+        }
+
+        public List<InteractionEvent> getEvents() {
+            return events;
+        }
+
+        public boolean isStale() {
+            return System.currentTimeMillis() - fetchedAt > FRESH_TTL_MS;
+        }
+
+        /**
+         * The events compiled for replay. Compiled on first use and kept with the
+         * entry, so a refreshed entry gets a fresh plan.
+         */
+        public ReplayPlan getPlan(InteractionReplayManager replayManager) {
+            ReplayPlan compiled = plan;
+            if (compiled == null) {
+                compiled = replayManager.compile(events);
+                plan = compiled;
+            }
+            return compiled;
+        }
+    }
+
+    public InteractionCache(File file) {
+        this.file = file;
+        diskExecutor.execute(this::load);
+    }
+
+    /**
+     * Teaches {@code resolver} every cached intent, now and as they are added or evicted.
+     */
+    public synchronized void setIntentResolver(IntentResolver resolver) {
+        this.intentResolver = resolver;
+        if (resolver != null) {
+            for (String key : entries.keySet()) {
+                resolver.learn(key, key);
+            }
+        }
+    }
+
+    public static String normalize(String intentText) {
+        StringBuilder normalized = new StringBuilder(intentText.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < intentText.length(); i++) {
+            char c = intentText.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Returns the cached entry for the intent, or null on a miss.
+     */
+    public synchronized Entry get(String intentText) {
+        return getByKey(normalize(intentText));
+    }
+
+    /**
+     * Returns the key of the most similar cached intent, or null if none is
+     * close enough. Its entry is looked up with {@link #get}; a near match may
+     * still mean something else, so callers should confirm it with the user first.
+     */
+    public synchronized String findSimilar(String intentText) {
+        IntentMatcher.Match match = matcher.findBest(normalize(intentText), MIN_MATCH_SCORE);
+        if (match == null || getByKey(match.key) == null) {
+            return null;
+        }
+        Log.d(TAG, "Matched \"" + intentText + "\" to \"" + match.key + "\" with score " + match.score);
+        return match.key;
+    }
+
+    /**
+     * True if the command and the cached intent {@code key} differ in a word
+     * rarer than any they share, e.g. "debit" and "credit", so one cannot stand
+     * in for the other.
+     */
+    public synchronized boolean differsInRareWord(String intentText, String key) {
+        return matcher.differsInRareWord(normalize(intentText), key);
+    }
+
+    private Entry getByKey(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.fetchedAt > MAX_AGE_MS) {
+            entries.remove(key);
+            removed(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private void added(String key) {
+        matcher.add(key);
+        IntentResolver resolver = intentResolver;
+        if (resolver != null) {
+            resolver.learn(key, key);
+        }
+    }
+
+    private void removed(String key) {
+        matcher.remove(key);
+        IntentResolver resolver = intentResolver;
+        if (resolver != null) {
+            resolver.forget(key);
+        }
+    }
+
+    public void put(String intentText, List<InteractionEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            if (shutdown) {
+                // A download that outlived the service; there is nowhere to save it
+                return;
+            }
+            String key = normalize(intentText);
+            entries.put(key, new Entry(new ArrayList<>(events), System.currentTimeMillis()));
+            added(key);
+            diskExecutor.execute(this::save);
+        }
+    }
+
+    /**
+     * Stops saving to disk. Later calls to {@link #put} are ignored.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        diskExecutor.shutdown();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Ignoring cache file with unknown version");
+                return;
+            }
+            int entryCount = in.readInt();
+            LinkedHashMap<String, Entry> loaded = new LinkedHashMap<>();
+            for (int i = 0; i < entryCount; i++) {
+                String key = in.readUTF();
+                long fetchedAt = in.readLong();
+                int eventCount = in.readInt();
+                List<InteractionEvent> events = new ArrayList<>(eventCount);
+                for (int j = 0; j < eventCount; j++) {
+                    events.add(new InteractionEvent(in.readLong(), in.readInt(), in.readUTF(), in.readUTF(), in.readUTF(),
+                        in.readBoolean() ? in.readUTF() : null));
+                }
+                loaded.put(key, new Entry(events, fetchedAt));
+            }
+            synchronized (this) {
+                // Anything fetched while we were loading is newer, so keep it
+                for (Map.Entry<String, Entry> entry : loaded.entrySet()) {
+                    if (!entries.containsKey(entry.getKey())) {
+                        entries.put(entry.getKey(), entry.getValue());
+                        added(entry.getKey());
+                    }
+                }
+            }
+            Log.d(TAG, "Loaded " + entryCount + " cached intents");
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading interaction cache: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> entry : snapshot) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().fetchedAt);
+                out.writeInt(entry.getValue().events.size());
+                for (InteractionEvent event : entry.getValue().events) {
+                    out.writeLong(event.getTimestamp());
+                    out.writeInt(event.getViewId());
+                    out.writeUTF(event.getViewResourceName());
+                    out.writeUTF(event.getScreenName());
+                    out.writeUTF(event.getActionType());
+                    out.writeBoolean(event.getValue() != null);
+                    if (event.getValue() != null) {
+                        out.writeUTF(event.getValue());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error saving interaction cache: " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Error replacing interaction cache file");
+        }
+    }
+}
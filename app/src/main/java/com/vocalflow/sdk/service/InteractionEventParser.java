@@ -0,0 +1,202 @@
+package com.vocalflow.sdk.service;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.view.View;
+
+import com.vocalflow.InteractionEvent;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming parser for get_interactions responses.
+ *
+ * Events are read with a pull parser as the body arrives and handed to the
+ * listener one at a time, so callers can act on the first event before the
+ * rest of the response has been downloaded.
+ */
+public class InteractionEventParser {
+
+    public interface Listener {
+        void onEvent(InteractionEvent event);
+    }
+
+    /**
+     * Parses a JSON array of events, notifying the listener as each one is read.
+     * Returns all events sorted by timestamp.
+     */
+    public static List<InteractionEvent> parse(Reader in, Listener listener) throws IOException {
+        List<InteractionEvent> events = new ArrayList<>();
+        boolean inOrder = true;
+        long lastTimestamp = Long.MIN_VALUE;
+
+        JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                InteractionEvent event = readEvent(reader);
+                if (event.getTimestamp() < lastTimestamp) {
+                    inOrder = false;
+                }
+                lastTimestamp = event.getTimestamp();
+                events.add(event);
+                if (listener != null) {
+                    listener.onEvent(event);
+                }
+            }
+            reader.endArray();
+        } finally {
+            reader.close();
+        }
+
+        if (!inOrder) {
+            // Sort events by timestamp in ascending order
+            Collections.sort(events, (e1, e2) -> Long.compare(e1.getTimestamp(), e2.getTimestamp()));
+        }
+        return events;
+    }
+
+    private static InteractionEvent readEvent(JsonReader reader) throws IOException {
+        long timestamp = 0;
+        int viewId = View.NO_ID;
+        String viewResourceName = "NO_ID";
+        String screenName = "";
+        String actionType = "";
+        String value = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "timestamp":
+                    try {
+                        timestamp = parseIsoTimestamp(reader.nextString());
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e.getMessage());
+                    }
+                    break;
+                case "view_id":
+                    viewId = reader.nextInt();
+                    break;
+                case "view_resource_name":
+                    viewResourceName = reader.nextString();
+                    break;
+                case "screen_name":
+                    screenName = reader.nextString();
+                    break;
+                case "action_type":
+                    actionType = reader.nextString();
+                    break;
+                case "value":
+                    value = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new InteractionEvent(timestamp, viewId, viewResourceName, screenName, actionType, value);
+    }
+
+    /**
+     * Converts an ISO-8601 timestamp such as {@code 2024-05-01T10:15:30.250Z} or
+     * {@code 2024-05-01T10:15:30+05:30} to epoch milliseconds by reading the digits
+     * in place. Anything else falls back to {@link OffsetDateTime#parse}.
+     */
+    static long parseIsoTimestamp(String value) {
+        int length = value.length();
+        if (length < 20 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return parseSlow(value);
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        int hour = digits(value, 11, 13);
+        int minute = digits(value, 14, 16);
+        int second = digits(value, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return parseSlow(value);
+        }
+
+        int pos = 19;
+        int millis = 0;
+        if (value.charAt(pos) == '.') {
+            pos++;
+            int scale = 100;
+            while (pos < length && Character.isDigit(value.charAt(pos))) {
+                millis += (value.charAt(pos) - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+        }
+
+        int offsetSeconds;
+        char zone = pos < length ? value.charAt(pos) : 0;
+        if (zone == 'Z' && pos + 1 == length) {
+            offsetSeconds = 0;
+        } else if ((zone == '+' || zone == '-') && pos + 6 == length && value.charAt(pos + 3) == ':') {
+            int offsetHours = digits(value, pos + 1, pos + 3);
+            int offsetMinutes = digits(value, pos + 4, pos + 6);
+            if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return parseSlow(value);
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (zone == '-' ? -1 : 1);
+        } else {
+            return parseSlow(value);
+        }
+
+        long epochSeconds = daysFromCivil(year, month, day) * 86400L
+                + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return epochSeconds * 1000L + millis;
+    }
+
+    private static long parseSlow(String value) {
+        try {
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp: " + value, e);
+        }
+    }
+
+    private static int digits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -14,36 +14,76 @@ import com.vocalflow.VocalFlowApplication;
 import com.vocalflow.AutoInteractionTracker;
 import com.vocalflow.InteractionEvent;
 import com.vocalflow.InteractionReplayManager;
+import com.vocalflow.NetworkClient;
+import com.vocalflow.ReplayEventStream;
+import com.vocalflow.ScreenMapper;
+import com.vocalflow.sdk.llm.ConversationSession;
+import com.vocalflow.sdk.llm.IntentResolver;
+import com.vocalflow.sdk.llm.LLMResponseCache;
 import com.vocalflow.sdk.llm.LLMService;
+import com.vocalflow.sdk.llm.LocalIntentClassifier;
 import com.vocalflow.sdk.speech.CommandListener;
+import com.vocalflow.sdk.speech.SpeechRecognizerManager;
+import com.vocalflow.sdk.speech.TextToSpeechManager;
+import com.vocalflow.sdk.speech.AudioWakeWordEngine;
 import com.vocalflow.sdk.speech.WakeWordDetector;
+import com.vocalflow.sdk.speech.WakeWordEngine;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
 
 public class VoiceAgentService extends Service {
     private static final String TAG = "VoiceAgentService";
     private static final String WAKE_WORD = "hey luma";
     private static final String SLEEP_WORD = "goodbye";
+    // Partial transcriptions shorter than this are too ambiguous to fetch for
+    private static final int MIN_SPECULATION_WORDS = 2;
+
+    private static final String GET_INTERACTIONS_URL = "https://web-production-9ea4.up.railway.app/api/get_interactions/?intent_text=";
+    private static final String INTERACTION_CACHE_FILE_NAME = "interaction_cache.bin";
+    private static final String WAKE_WORD_TEMPLATES_FILE_NAME = "wake_word_templates.bin";
+    private static final String LLM_RESPONSE_CACHE_DIR_NAME = "llm_responses";
+    // Below this a local resolution is not trusted and the remote APIs decide
+    private static final float MIN_INTENT_CONFIDENCE = 0.75f;
+    // How long a "did you mean" question waits for its answer
+    private static final long CONFIRMATION_TIMEOUT_MS = 15000;
+    private static final Set<String> YES_WORDS = new HashSet<>(Arrays.asList(
+        "yes", "yeah", "yep", "yup", "sure", "correct", "ok", "okay"
+    ));
+    private static final Set<String> NO_WORDS = new HashSet<>(Arrays.asList(
+        "no", "nope", "cancel", "nevermind"
+    ));
 
     private final IBinder binder = new LocalBinder();
-    private WakeWordDetector wakeWordDetector;
+    private NetworkClient networkClient;
+    private InteractionCache interactionCache;
+    private IntentResolver intentResolver;
+    // The one recognizer shared by wake word and command modes
+    private SpeechRecognizerManager speechRecognizerManager;
+    private WakeWordEngine wakeWordDetector;
+    private WakeWordEngine.WakeWordListener wakeWordListener;
     private CommandListener commandListener;
     private LLMService llmService;
-    private TextToSpeech textToSpeech;
+    // Context for follow-up questions until the user says the sleep word
+    private ConversationSession conversation;
+    // The streamed answer being spoken, if any
+    private Call answerCall;
+    private TextToSpeechManager textToSpeech;
     private boolean isListeningForCommands = false;
+    private boolean bargeInEnabled = false;
+    // Only touched on the main thread
+    private Speculation speculation;
+    // The similar cached intent waiting for the user to confirm it, if any
+    private String pendingConfirmation;
+    private long pendingConfirmationAt;
     private TextView speechTextView;
 
     public class LocalBinder extends Binder {
@@ -75,6 +115,39 @@ public class VoiceAgentService extends Service {
         this.speechTextView = textView;
     }
 
+    /**
+     * Replaces the resolver that handles known commands on the device.
+     */
+    public void setIntentResolver(IntentResolver resolver) {
+        intentResolver = resolver;
+        if (interactionCache != null) {
+            interactionCache.setIntentResolver(resolver);
+        }
+    }
+
+    /**
+     * Navigation commands are answered by a fixed grammar; everything else is
+     * learned from the recorded flows in the interaction cache.
+     */
+    private IntentResolver createIntentResolver() {
+        LocalIntentClassifier classifier = new LocalIntentClassifier();
+        String open = "(go to|open|show|take me to)( the| my)? ";
+        classifier.addRule(open + "(home|main screen|dashboard)", IntentResolver.SCREEN_INTENT_PREFIX + "MainActivity");
+        classifier.addRule(open + "(bills?|bill pay|bill payments?)", IntentResolver.SCREEN_INTENT_PREFIX + "BillPayActivity");
+        classifier.addRule(open + "(payment methods?|cards)", IntentResolver.SCREEN_INTENT_PREFIX + "PaymentMethodsActivity");
+        return classifier;
+    }
+
+    /**
+     * Lets the user interrupt the greeting by starting their command over it.
+     */
+    public void setBargeInEnabled(boolean enabled) {
+        bargeInEnabled = enabled;
+        if (commandListener != null) {
+            commandListener.setBargeInEnabled(enabled);
+        }
+    }
+
     private void setupVoiceAgent() {
         // Initialize LLM service with API key from BuildConfig
         String apiKey = BuildConfig.OPENAI_API_KEY;
@@ -83,23 +156,29 @@ public class VoiceAgentService extends Service {
             return;
         }
         
-        llmService = new LLMService(this, apiKey);
+        networkClient = VocalFlowApplication.getNetworkClient();
+        llmService = new LLMService(this, apiKey, networkClient.getHttpClient());
+        llmService.setResponseCache(new LLMResponseCache(new File(getCacheDir(), LLM_RESPONSE_CACHE_DIR_NAME)),
+            networkClient.getBackgroundExecutor());
+        conversation = llmService.newSession();
+        interactionCache = new InteractionCache(new File(getCacheDir(), INTERACTION_CACHE_FILE_NAME));
+        setIntentResolver(createIntentResolver());
 
         // Initialize TextToSpeech
-        textToSpeech = new TextToSpeech(this, status -> {
-            if (status == TextToSpeech.SUCCESS) {
-                textToSpeech.setLanguage(java.util.Locale.US);
-            } else {
-                Log.e(TAG, "TextToSpeech initialization failed");
-            }
-        });
+        if (textToSpeech != null) {
+            textToSpeech.destroy();
+        }
+        textToSpeech = new TextToSpeechManager(this);
 
         // Create and initialize wake word detector
         if (wakeWordDetector != null) {
             wakeWordDetector.destroy();
         }
-        wakeWordDetector = new WakeWordDetector(this, WAKE_WORD);
-        wakeWordDetector.setWakeWordListener(new WakeWordDetector.WakeWordListener() {
+        if (speechRecognizerManager != null) {
+            speechRecognizerManager.destroy();
+        }
+        speechRecognizerManager = new SpeechRecognizerManager(this);
+        wakeWordListener = new WakeWordEngine.WakeWordListener() {
             @Override
             public void onWakeWordDetected() {
                 Log.d(TAG, "Wake word detected in VoiceAgentService");
@@ -109,7 +188,7 @@ public class VoiceAgentService extends Service {
                     }
                 });
                 Log.d(TAG, "Speaking greeting");
-                textToSpeech.speak("Hi there! How can I help you today", TextToSpeech.QUEUE_FLUSH, null, null);
+                textToSpeech.speak("Hi there! How can I help you today");
                 Log.d(TAG, "Starting command mode");
                 startCommandMode();
             }
@@ -117,7 +196,8 @@ public class VoiceAgentService extends Service {
             @Override
             public void onError(int error) {
                 Log.e(TAG, "Wake word detection error: " + error);
-                if (!isListeningForCommands) {
+                // The audio engine gives up when the microphone fails; the recognizer restarts by itself
+                if (!isListeningForCommands && wakeWordDetector instanceof AudioWakeWordEngine) {
                     new android.os.Handler(getMainLooper()).postDelayed(() -> {
                         if (wakeWordDetector != null) {
                             wakeWordDetector.startDetection();
@@ -125,13 +205,16 @@ public class VoiceAgentService extends Service {
                     }, 1000);
                 }
             }
-        });
+        };
+        wakeWordDetector = createWakeWordEngine();
 
         // Initialize command listener (but don't start it yet)
         if (commandListener != null) {
             commandListener.destroy();
         }
-        commandListener = new CommandListener(this);
+        commandListener = new CommandListener(speechRecognizerManager);
+        commandListener.setTextToSpeech(textToSpeech);
+        commandListener.setBargeInEnabled(bargeInEnabled);
         commandListener.setCommandListener(new CommandListener.OnCommandListener() {
             @Override
             public void onCommandReceived(String command) {
@@ -144,13 +227,16 @@ public class VoiceAgentService extends Service {
                 
                 // Check for sleep word
                 if (command.toLowerCase().contains(SLEEP_WORD)) {
+                    cancelSpeculation();
+                    pendingConfirmation = null;
                     Log.d(TAG, "Sleep word detected, stopping command mode");
                     updateUI(() -> {
                         if (speechTextView != null) {
                             speechTextView.setText("Goodbye!");
                         }
                     });
-                    textToSpeech.speak("Goodbye!", TextToSpeech.QUEUE_FLUSH, null, null);
+                    textToSpeech.speak("Goodbye!");
+                    conversation.clear();
                     stopCommandMode();
                     return;
                 }
@@ -159,76 +245,16 @@ public class VoiceAgentService extends Service {
                 executeCommand(command);
             }
 
-            public void executeCommand(String command) {
-                ExecutorService executor = Executors.newSingleThreadExecutor();
-                executor.execute(() -> {
-                    try {
-                        // Make API call
-                        String apiUrl = "https://web-production-9ea4.up.railway.app/api/get_interactions/?intent_text=" + 
-                                      java.net.URLEncoder.encode(command, "UTF-8");
-                        URL url = new URL(apiUrl);
-                        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                        connection.setRequestMethod("GET");
-                        
-                        int responseCode = connection.getResponseCode();
-                        if (responseCode == HttpURLConnection.HTTP_OK) {
-                            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                            String inputLine;
-                            StringBuilder response = new StringBuilder();
-                            
-                            while ((inputLine = in.readLine()) != null) {
-                                response.append(inputLine);
-                            }
-                            in.close();
-                            
-                            // Parse JSON response
-                            JSONArray jsonArray = new JSONArray(response.toString());
-                            List<InteractionEvent> events = new ArrayList<>();
-                            
-                            for (int i = 0; i < jsonArray.length(); i++) {
-                                JSONObject eventJson = jsonArray.getJSONObject(i);
-                                // Convert timestamp from ISO format to milliseconds
-                                String timestampStr = eventJson.getString("timestamp");
-                                long timestamp = java.time.Instant.parse(timestampStr).toEpochMilli();
-                                
-                                InteractionEvent event = new InteractionEvent(
-                                    timestamp,
-                                    eventJson.getInt("view_id"),
-                                    eventJson.getString("view_resource_name"),
-                                    eventJson.getString("screen_name"),
-                                    eventJson.getString("action_type")
-                                );
-                                events.add(event);
-                            }
-                            
-                            // Sort events by timestamp in ascending order
-                            Collections.sort(events, (e1, e2) -> Long.compare(e1.getTimestamp(), e2.getTimestamp()));
-                            
-                            // Replay events on main thread
-                            new android.os.Handler(getMainLooper()).post(() -> {
-                                final InteractionReplayManager replayManager = VocalFlowApplication.getReplayManager();
-                                replayManager.replay(events);
-                            });
-                        } else {
-                            Log.e(TAG, "API call failed with response code: " + responseCode);
-                        }
-                    } catch (IOException | JSONException e) {
-                        Log.e(TAG, "Error executing command: " + e.getMessage());
-                    }
-                });
-                executor.shutdown();
+            @Override
+            public void onPartialCommand(String stablePrefix) {
+                speculate(stablePrefix);
             }
 
             @Override
             public void onError(int error) {
                 Log.e(TAG, "Command recognition error: " + error);
-                if (isListeningForCommands) {
-                    new android.os.Handler(getMainLooper()).postDelayed(() -> {
-                        if (commandListener != null) {
-                            commandListener.startListening();
-                        }
-                    }, 1000);
-                }
+                // The recognizer manager restarts listening by itself
+                cancelSpeculation();
             }
         });
 
@@ -237,28 +263,332 @@ public class VoiceAgentService extends Service {
         wakeWordDetector.startDetection();
     }
 
+    private void executeCommand(String command) {
+        if (answerConfirmation(command)) {
+            return;
+        }
+        if (commitSpeculation(command)) {
+            return;
+        }
+        InteractionCache.Entry cached = interactionCache.get(command);
+        if (cached == null) {
+            if (resolveLocally(command)) {
+                return;
+            }
+            String similar = interactionCache.findSimilar(command);
+            if (similar != null) {
+                askToConfirm(similar, command);
+                return;
+            }
+        }
+        if (cached != null) {
+            Log.d(TAG, "Replaying cached interactions for: " + command);
+            replay(cached);
+            if (!cached.isStale()) {
+                return;
+            }
+            Log.d(TAG, "Cached interactions are stale, refreshing in background");
+            // cleanup() may clear the field before the download finishes
+            InteractionCache cache = interactionCache;
+            networkClient.getBackgroundExecutor().execute(() -> {
+                List<InteractionEvent> events = fetchInteractions(command, null);
+                if (events != null) {
+                    cache.put(command, events);
+                }
+            });
+            return;
+        }
+
+        // Start replaying while the response is still streaming in
+        ReplayEventStream stream = new ReplayEventStream();
+        replay(stream);
+        InteractionCache cache = interactionCache;
+        networkClient.getBackgroundExecutor().execute(() -> {
+            List<InteractionEvent> events = fetchInteractions(command, stream::offer);
+            if (events == null) {
+                stream.abort();
+                return;
+            }
+            stream.complete();
+            cache.put(command, events);
+        });
+    }
+
+    /**
+     * A near match may still mean something else, so the user is asked before
+     * it is replayed. The answer is handled by {@link #answerConfirmation}.
+     */
+    private void askToConfirm(String intent, String command) {
+        Log.d(TAG, "Asking to confirm cached intent \"" + intent + "\" for: " + command);
+        pendingConfirmation = intent;
+        pendingConfirmationAt = System.currentTimeMillis();
+        textToSpeech.speak("Did you mean " + intent + "?");
+        startCommandMode();
+    }
+
+    /**
+     * Handles the answer to a "did you mean" question, returning true if the
+     * command was one. A yes replays the similar intent and a no drops it;
+     * anything else is taken as a new command.
+     */
+    private boolean answerConfirmation(String command) {
+        String similar = pendingConfirmation;
+        pendingConfirmation = null;
+        if (similar == null || System.currentTimeMillis() - pendingConfirmationAt > CONFIRMATION_TIMEOUT_MS) {
+            return false;
+        }
+        String normalized = InteractionCache.normalize(command);
+        String firstWord = normalized.split(" ")[0];
+        if (NO_WORDS.contains(firstWord)) {
+            Log.d(TAG, "Similar intent declined: " + similar);
+            textToSpeech.speak("Okay");
+            return true;
+        }
+        if (!YES_WORDS.contains(firstWord)) {
+            return false;
+        }
+        InteractionCache.Entry entry = interactionCache.get(similar);
+        if (entry == null) {
+            // Evicted while waiting for the answer; "yes" is no command of its own
+            Log.d(TAG, "Confirmed intent is no longer cached: " + similar);
+            return true;
+        }
+        Log.d(TAG, "Replaying confirmed similar intent: " + similar);
+        // A near match stays keyed on its own text
+        replay(entry);
+        return true;
+    }
+
+    /**
+     * Carries the command out on the device if the intent resolver is confident
+     * about it, returning true if it did. Only exact resolutions, such as
+     * grammar rules, run straight away; a learned intent is confirmed first.
+     */
+    private boolean resolveLocally(String command) {
+        IntentResolver resolver = intentResolver;
+        IntentResolver.Resolution resolution = resolver != null ? resolver.resolve(command) : null;
+        if (resolution == null || resolution.confidence < MIN_INTENT_CONFIDENCE) {
+            return false;
+        }
+        String screenName = resolution.getScreenName();
+        if (!resolution.exact) {
+            // A learned intent is only a guess, held to the same checks as a similar cached intent
+            if (screenName != null || interactionCache.get(resolution.intent) == null
+                    || interactionCache.differsInRareWord(command, resolution.intent)) {
+                return false;
+            }
+            askToConfirm(resolution.intent, command);
+            return true;
+        }
+        if (screenName != null) {
+            Class<?> activity = ScreenMapper.getActivityClass(screenName);
+            if (activity == null) {
+                Log.e(TAG, "Resolved to unknown screen: " + screenName);
+                return false;
+            }
+            Log.d(TAG, "Resolved \"" + command + "\" on device to " + resolution);
+            Intent intent = new Intent(this, activity);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            startActivity(intent);
+            return true;
+        }
+        InteractionCache.Entry entry = interactionCache.get(resolution.intent);
+        if (entry == null) {
+            // Evicted since the resolver learned it
+            return false;
+        }
+        Log.d(TAG, "Resolved \"" + command + "\" on device to " + resolution);
+        replay(entry);
+        return true;
+    }
+
+    /**
+     * Starts fetching the interactions for a partial transcription before the
+     * user has finished speaking. Only one speculation is kept; a new stable
+     * prefix replaces it. Cache hits need no speculation since they resolve
+     * instantly once the final command arrives.
+     */
+    private void speculate(String partialCommand) {
+        String key = InteractionCache.normalize(partialCommand);
+        if (speculation != null) {
+            if (speculation.key.equals(key)) {
+                return;
+            }
+            speculation.cancel();
+            speculation = null;
+        }
+        if (interactionCache == null || key.split(" ").length < MIN_SPECULATION_WORDS
+                || key.contains(SLEEP_WORD)
+                || interactionCache.get(partialCommand) != null
+                || interactionCache.findSimilar(partialCommand) != null) {
+            return;
+        }
+        Log.d(TAG, "Speculatively fetching interactions for: " + partialCommand);
+        Speculation started = new Speculation(partialCommand, key);
+        speculation = started;
+        networkClient.getBackgroundExecutor().execute(started::fetch);
+    }
+
+    /**
+     * Replays the speculative fetch if it was for the same command, returning
+     * true if it did. A speculation for different words is cancelled.
+     */
+    private boolean commitSpeculation(String command) {
+        Speculation pending = speculation;
+        speculation = null;
+        if (pending == null) {
+            return false;
+        }
+        if (!pending.key.equals(InteractionCache.normalize(command))) {
+            Log.d(TAG, "Final command differs from speculation, cancelling it");
+            pending.cancel();
+            return false;
+        }
+        Log.d(TAG, "Final command matches speculation, replaying it");
+        pending.commit(command);
+        replay(pending.stream);
+        return true;
+    }
+
+    private void cancelSpeculation() {
+        if (speculation != null) {
+            speculation.cancel();
+            speculation = null;
+        }
+    }
+
+    /**
+     * A get_interactions download started from a partial transcription. Events
+     * are buffered in its stream until the final command commits it. Only a
+     * committed speculation is cached, and under the final command, so partial
+     * commands such as "pay my" never end up in the cache.
+     */
+    private class Speculation {
+        final String command;
+        final String key;
+        final ReplayEventStream stream = new ReplayEventStream();
+        private final InteractionCache cache = interactionCache;
+        private volatile boolean cancelled = false;
+        private volatile Call call;
+        // Set once each; whichever comes second caches the result
+        private List<InteractionEvent> fetched;
+        private String committedCommand;
+
+        Speculation(String command, String key) {
+            this.command = command;
+            this.key = key;
+        }
+
+        void fetch() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                call = newInteractionsCall(command);
+            } catch (IOException e) {
+                Log.e(TAG, "Error executing command: " + e.getMessage());
+                stream.abort();
+                return;
+            }
+            // Re-check now that cancel() can see the call
+            if (cancelled) {
+                call.cancel();
+            }
+            List<InteractionEvent> events = fetchInteractions(call, stream::offer);
+            if (events == null || cancelled) {
+                stream.abort();
+                return;
+            }
+            stream.complete();
+            finish(events);
+        }
+
+        synchronized void commit(String finalCommand) {
+            committedCommand = finalCommand;
+            cacheIfDone();
+        }
+
+        private synchronized void finish(List<InteractionEvent> events) {
+            fetched = events;
+            cacheIfDone();
+        }
+
+        private void cacheIfDone() {
+            if (committedCommand != null && fetched != null) {
+                cache.put(committedCommand, fetched);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+            stream.abort();
+        }
+    }
+
+    /**
+     * Downloads the interactions for a command, handing each event to the
+     * listener as soon as it has been parsed. Returns them sorted by timestamp.
+     */
+    private List<InteractionEvent> fetchInteractions(String command, InteractionEventParser.Listener listener) {
+        try {
+            return fetchInteractions(newInteractionsCall(command), listener);
+        } catch (IOException e) {
+            Log.e(TAG, "Error executing command: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Call newInteractionsCall(String command) throws IOException {
+        Request request = new Request.Builder()
+            .url(GET_INTERACTIONS_URL + java.net.URLEncoder.encode(command, "UTF-8"))
+            .get()
+            .build();
+        return networkClient.getHttpClient().newCall(request);
+    }
+
+    private List<InteractionEvent> fetchInteractions(Call call, InteractionEventParser.Listener listener) {
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                Log.e(TAG, "API call failed with response code: " + response.code());
+                return null;
+            }
+            // Parse events straight off the wire instead of buffering the whole body
+            return InteractionEventParser.parse(response.body().charStream(), listener);
+        } catch (IOException e) {
+            Log.e(TAG, "Error executing command: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void replay(InteractionCache.Entry entry) {
+        // Cached flows are replayed from their compiled plan
+        InteractionReplayManager replayManager = VocalFlowApplication.getReplayManager();
+        replayManager.replay(entry.getPlan(replayManager), InteractionReplayManager.Mode.REPLACE, null);
+    }
+
+    private void replay(ReplayEventStream events) {
+        // A newer command always wins over a flow that is still replaying
+        VocalFlowApplication.getReplayManager().replay(events, InteractionReplayManager.Mode.REPLACE, null);
+    }
+
     private void startCommandMode() {
         Log.d(TAG, "Starting command mode");
         isListeningForCommands = true;
         
+        // Hand the recognizer (or microphone) over; nothing is torn down
         if (wakeWordDetector != null) {
-            Log.d(TAG, "Stopping and destroying wake word detector");
             wakeWordDetector.stopDetection();
-            wakeWordDetector.destroy();
-            wakeWordDetector = null;
+        }
+        if (commandListener != null) {
+            // Listen as soon as the greeting ends rather than after a fixed delay
+            commandListener.startListeningAfterPrompt();
         } else {
-            Log.e(TAG, "Wake word detector is null in startCommandMode");
+            Log.e(TAG, "Command listener is null, cannot start listening");
         }
-        
-        // Start command listening with a delay
-        new android.os.Handler(getMainLooper()).postDelayed(() -> {
-            if (commandListener != null) {
-                Log.d(TAG, "Starting command listener with delay");
-                commandListener.startListeningWithDelay();
-            } else {
-                Log.e(TAG, "Command listener is null, cannot start listening");
-            }
-        }, 1000);
     }
 
     private void stopCommandMode() {
@@ -269,39 +599,124 @@ public class VoiceAgentService extends Service {
             commandListener.stopListening();
         }
         
-        // Reinitialize wake word detector
+        // Go back to waiting for the wake word on the same recognizer
         if (wakeWordDetector == null) {
-            wakeWordDetector = new WakeWordDetector(this, WAKE_WORD);
-            wakeWordDetector.setWakeWordListener(new WakeWordDetector.WakeWordListener() {
-                @Override
-                public void onWakeWordDetected() {
-                    Log.d(TAG, "Wake word detected");
-                    updateUI(() -> {
-                        if (speechTextView != null) {
-                            speechTextView.setText("Wake word detected: " + WAKE_WORD);
-                        }
-                    });
-                    textToSpeech.speak("Hi there! How can I help you today", TextToSpeech.QUEUE_FLUSH, null, null);
-                    startCommandMode();
-                }
+            wakeWordDetector = createWakeWordEngine();
+        }
+        wakeWordDetector.startDetection();
+    }
 
-                @Override
-                public void onError(int error) {
-                    Log.e(TAG, "Wake word detection error: " + error);
-                    if (!isListeningForCommands) {
-                        new android.os.Handler(getMainLooper()).postDelayed(() -> {
-                            if (wakeWordDetector != null) {
-                                wakeWordDetector.startDetection();
-                            }
-                        }, 1000);
-                    }
+    /**
+     * Prefers the low-power audio engine once a wake word has been enrolled for
+     * it, and falls back to running the speech recognizer otherwise.
+     */
+    private WakeWordEngine createWakeWordEngine() {
+        WakeWordEngine engine;
+        AudioWakeWordEngine audioEngine = new AudioWakeWordEngine();
+        if (audioEngine.loadTemplates(new File(getFilesDir(), WAKE_WORD_TEMPLATES_FILE_NAME)) > 0) {
+            Log.d(TAG, "Using enrolled wake word templates");
+            engine = audioEngine;
+        } else {
+            Log.d(TAG, "No wake word enrolled, detecting with the speech recognizer");
+            engine = new WakeWordDetector(speechRecognizerManager, WAKE_WORD);
+        }
+        engine.setWakeWordListener(wakeWordListener);
+        return engine;
+    }
+
+    /**
+     * Records the next thing the user says as a wake word template and switches
+     * wake word detection over to the low-power audio engine.
+     */
+    public void enrollWakeWord() {
+        if (isListeningForCommands) {
+            Log.w(TAG, "Cannot enroll a wake word while listening for commands");
+            return;
+        }
+        if (wakeWordDetector != null) {
+            wakeWordDetector.destroy();
+        }
+        File templates = new File(getFilesDir(), WAKE_WORD_TEMPLATES_FILE_NAME);
+        AudioWakeWordEngine engine = new AudioWakeWordEngine();
+        engine.loadTemplates(templates);
+        engine.setWakeWordListener(wakeWordListener);
+        engine.enrollNextUtterance(template -> {
+            try {
+                engine.saveTemplates(templates);
+            } catch (IOException e) {
+                Log.e(TAG, "Error saving wake word template: " + e.getMessage());
+            }
+            updateUI(() -> {
+                if (speechTextView != null) {
+                    speechTextView.setText("Wake word enrolled");
                 }
             });
+        });
+        wakeWordDetector = engine;
+        engine.startDetection();
+    }
+
+    /**
+     * Answers a question out loud with the LLM, speaking each sentence as soon
+     * as it has been generated. A new answer replaces one still being spoken.
+     * Earlier questions and answers are sent along, so follow-ups work.
+     */
+    public void speakAnswer(String question) {
+        if (llmService == null || textToSpeech == null) {
+            Log.e(TAG, "Voice agent not set up, cannot answer: " + question);
+            return;
+        }
+        cancelAnswer();
+        boolean[] first = {true};
+        Call[] call = new Call[1];
+        call[0] = llmService.streamResponse(conversation, question, new LLMService.LLMStreamCallback() {
+            @Override
+            public void onSentence(String sentence) {
+                updateUI(() -> {
+                    if (answerCall != call[0] || textToSpeech == null) {
+                        return;
+                    }
+                    // The first sentence cuts off whatever was playing, the rest queue behind it
+                    textToSpeech.speak(sentence, first[0] ? TextToSpeech.QUEUE_FLUSH : TextToSpeech.QUEUE_ADD);
+                    first[0] = false;
+                });
+            }
+
+            @Override
+            public void onComplete(String response) {
+                updateUI(() -> {
+                    if (answerCall == call[0]) {
+                        answerCall = null;
+                    }
+                    if (speechTextView != null) {
+                        speechTextView.setText(response);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String error) {
+                Log.e(TAG, "Error streaming answer: " + error);
+                updateUI(() -> {
+                    if (answerCall == call[0]) {
+                        answerCall = null;
+                    }
+                });
+            }
+        });
+        answerCall = call[0];
+    }
+
+    private void cancelAnswer() {
+        if (answerCall != null) {
+            answerCall.cancel();
+            answerCall = null;
         }
-        // wakeWordDetector.startDetection();
     }
 
     private void cleanup() {
+        cancelSpeculation();
+        cancelAnswer();
         if (wakeWordDetector != null) {
             wakeWordDetector.destroy();
             wakeWordDetector = null;
@@ -310,11 +725,21 @@ public class VoiceAgentService extends Service {
             commandListener.destroy();
             commandListener = null;
         }
+        if (speechRecognizerManager != null) {
+            speechRecognizerManager.destroy();
+            speechRecognizerManager = null;
+        }
         if (textToSpeech != null) {
-            textToSpeech.stop();
-            textToSpeech.shutdown();
+            textToSpeech.destroy();
             textToSpeech = null;
         }
+        if (interactionCache != null) {
+            interactionCache.shutdown();
+            interactionCache = null;
+        }
+        if (llmService != null && llmService.getResponseCache() != null) {
+            llmService.getResponseCache().shutdown();
+        }
     }
 
     private void updateUI(Runnable action) {
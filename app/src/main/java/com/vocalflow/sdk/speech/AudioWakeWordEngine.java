@@ -0,0 +1,438 @@
+package com.vocalflow.sdk.speech;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.speech.SpeechRecognizer;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spots an enrolled wake word directly in the microphone stream.
+ *
+ * PCM is read from {@link AudioRecord} in 10 ms hops on one background thread.
+ * An energy gate with an adaptive noise floor keeps the thread idle through
+ * silence; only while someone is speaking are MFCC features computed and
+ * matched against the enrolled templates with streaming subsequence DTW, so
+ * the keyword is found even inside a longer utterance. Buffers and DTW state
+ * are allocated up front, so the audio loop does not allocate per frame.
+ *
+ * Templates come from {@link #enrollNextUtterance}: the user says the wake
+ * word and its features are kept. They can be saved and loaded with
+ * {@link #saveTemplates} and {@link #loadTemplates}.
+ */
+public class AudioWakeWordEngine implements WakeWordEngine {
+    private static final String TAG = "AudioWakeWordEngine";
+    private static final int HOP_LENGTH = 160;                 // 10 ms
+    private static final float MIN_SPEECH_RMS = 0.01f;         // about -40 dBFS
+    private static final float SPEECH_TO_NOISE_RATIO = 3f;
+    private static final float NOISE_FLOOR_ALPHA = 0.05f;
+    // The floor also creeps up while voiced, so a step up in steady noise such as a fan stops counting after a while
+    private static final float NOISE_FLOOR_RISE_ALPHA = 0.002f;
+    private static final int HANGOVER_FRAMES = 30;             // keep matching 300 ms past the last voiced frame
+    private static final int MIN_TEMPLATE_FRAMES = 20;
+    private static final int MAX_TEMPLATE_FRAMES = 200;
+    private static final int TEMPLATE_FILE_VERSION = 1;
+    public static final float DEFAULT_MATCH_THRESHOLD = 0.2f;
+
+    /**
+     * Receives a newly enrolled template on the main thread.
+     */
+    public interface EnrollmentListener {
+        void onTemplateEnrolled(float[][] template);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Replaced wholesale when a template is added, so the audio loop can iterate without locking
+    private volatile TemplateMatcher[] matchers = new TemplateMatcher[0];
+    private volatile float matchThreshold = DEFAULT_MATCH_THRESHOLD;
+    private volatile EnrollmentListener enrollmentListener;
+    private volatile boolean running = false;
+    private WakeWordListener wakeWordListener;
+    private Thread audioThread;
+
+    @Override
+    public void setWakeWordListener(WakeWordListener listener) {
+        this.wakeWordListener = listener;
+    }
+
+    /**
+     * Sets the DTW cost, as mean cosine distance per aligned frame, below which
+     * an utterance counts as the wake word. Lower is stricter.
+     */
+    public void setMatchThreshold(float matchThreshold) {
+        this.matchThreshold = matchThreshold;
+    }
+
+    public boolean hasTemplates() {
+        return matchers.length > 0;
+    }
+
+    public synchronized void addTemplate(float[][] template) {
+        TemplateMatcher[] current = matchers;
+        TemplateMatcher[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = new TemplateMatcher(template);
+        matchers = updated;
+    }
+
+    /**
+     * Records the next utterance as a wake word template instead of matching it.
+     * The engine has to be running for this to happen.
+     */
+    public void enrollNextUtterance(EnrollmentListener listener) {
+        this.enrollmentListener = listener;
+    }
+
+    @Override
+    public synchronized void startDetection() {
+        if (running) {
+            return;
+        }
+        if (!hasTemplates() && enrollmentListener == null) {
+            Log.w(TAG, "No wake word templates enrolled");
+        }
+        running = true;
+        audioThread = new Thread(this::runAudioLoop, "VocalFlow-WakeWord");
+        audioThread.start();
+    }
+
+    @Override
+    public void stopDetection() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = audioThread;
+            audioThread = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                // The loop wakes up within one hop and releases the microphone
+                thread.join(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        stopDetection();
+        wakeWordListener = null;
+        enrollmentListener = null;
+    }
+
+    private void runAudioLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        int minBuffer = AudioRecord.getMinBufferSize(MfccExtractor.SAMPLE_RATE,
+            AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record;
+        try {
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, MfccExtractor.SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                Math.max(minBuffer, HOP_LENGTH * 2 * 10));
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.e(TAG, "Cannot open microphone: " + e.getMessage());
+            reportError();
+            return;
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "AudioRecord failed to initialize");
+            record.release();
+            reportError();
+            return;
+        }
+
+        MfccExtractor mfcc = new MfccExtractor();
+        short[] hop = new short[HOP_LENGTH];
+        float[] frame = new float[MfccExtractor.FRAME_LENGTH];
+        float[] features = new float[MfccExtractor.NUM_COEFFS];
+        float[][] enrollment = new float[MAX_TEMPLATE_FRAMES][MfccExtractor.NUM_COEFFS];
+        int enrolledFrames = 0;
+        float noiseFloor = MIN_SPEECH_RMS / SPEECH_TO_NOISE_RATIO;
+        int hangover = 0;
+        boolean inUtterance = false;
+
+        try {
+            record.startRecording();
+            while (running) {
+                int read = record.read(hop, 0, HOP_LENGTH);
+                if (read < 0) {
+                    Log.e(TAG, "AudioRecord read failed: " + read);
+                    reportError();
+                    break;
+                }
+                if (read < HOP_LENGTH) {
+                    continue;
+                }
+
+                // Slide the analysis window forward by one hop
+                System.arraycopy(frame, HOP_LENGTH, frame, 0, MfccExtractor.FRAME_LENGTH - HOP_LENGTH);
+                int offset = MfccExtractor.FRAME_LENGTH - HOP_LENGTH;
+                float sumSquares = 0;
+                for (int i = 0; i < HOP_LENGTH; i++) {
+                    float sample = hop[i] / 32768f;
+                    frame[offset + i] = sample;
+                    sumSquares += sample * sample;
+                }
+                float rms = (float) Math.sqrt(sumSquares / HOP_LENGTH);
+
+                boolean voiced = rms > Math.max(MIN_SPEECH_RMS, noiseFloor * SPEECH_TO_NOISE_RATIO);
+                noiseFloor += (voiced ? NOISE_FLOOR_RISE_ALPHA : NOISE_FLOOR_ALPHA) * (rms - noiseFloor);
+                if (voiced) {
+                    hangover = HANGOVER_FRAMES;
+                } else {
+                    if (hangover > 0) {
+                        hangover--;
+                    }
+                }
+
+                if (!voiced && hangover == 0) {
+                    if (inUtterance) {
+                        // End of an utterance: finish enrollment and forget partial matches
+                        inUtterance = false;
+                        if (enrollmentListener != null && enrolledFrames >= MIN_TEMPLATE_FRAMES) {
+                            finishEnrollment(enrollment, enrolledFrames);
+                        }
+                        enrolledFrames = 0;
+                        for (TemplateMatcher matcher : matchers) {
+                            matcher.reset();
+                        }
+                    }
+                    continue;
+                }
+                inUtterance = true;
+
+                mfcc.compute(frame, features);
+                normalize(features);
+
+                if (enrollmentListener != null) {
+                    if (enrolledFrames < MAX_TEMPLATE_FRAMES) {
+                        System.arraycopy(features, 0, enrollment[enrolledFrames++], 0, features.length);
+                    }
+                    continue;
+                }
+
+                float threshold = matchThreshold;
+                for (TemplateMatcher matcher : matchers) {
+                    if (matcher.push(features) < threshold) {
+                        Log.d(TAG, "Wake word detected");
+                        running = false;
+                        reportDetection();
+                        break;
+                    }
+                }
+            }
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Audio capture failed: " + e.getMessage());
+            reportError();
+        } finally {
+            try {
+                record.stop();
+            } catch (IllegalStateException e) {
+                // Never started
+            }
+            record.release();
+            for (TemplateMatcher matcher : matchers) {
+                matcher.reset();
+            }
+        }
+    }
+
+    private void finishEnrollment(float[][] frames, int count) {
+        float[][] template = new float[count][];
+        for (int i = 0; i < count; i++) {
+            template[i] = frames[i].clone();
+        }
+        addTemplate(template);
+        EnrollmentListener listener = enrollmentListener;
+        enrollmentListener = null;
+        Log.d(TAG, "Enrolled wake word template of " + count + " frames");
+        if (listener != null) {
+            mainHandler.post(() -> listener.onTemplateEnrolled(template));
+        }
+    }
+
+    private void reportDetection() {
+        mainHandler.post(() -> {
+            if (wakeWordListener != null) {
+                wakeWordListener.onWakeWordDetected();
+            }
+        });
+    }
+
+    private void reportError() {
+        running = false;
+        mainHandler.post(() -> {
+            if (wakeWordListener != null) {
+                wakeWordListener.onError(SpeechRecognizer.ERROR_AUDIO);
+            }
+        });
+    }
+
+    // Scales to unit length so frame distance is cosine distance, independent of loudness
+    private static void normalize(float[] vector) {
+        float sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        if (sum == 0) {
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    /**
+     * Writes every enrolled template to the file.
+     */
+    public void saveTemplates(File file) throws IOException {
+        TemplateMatcher[] current = matchers;
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(TEMPLATE_FILE_VERSION);
+            out.writeInt(current.length);
+            for (TemplateMatcher matcher : current) {
+                out.writeInt(matcher.template.length);
+                for (float[] frame : matcher.template) {
+                    for (float value : frame) {
+                        out.writeFloat(value);
+                    }
+                }
+            }
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * Adds the templates stored in the file, returning how many were loaded.
+     */
+    public int loadTemplates(File file) {
+        if (!file.exists()) {
+            return 0;
+        }
+        List<float[][]> loaded = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != TEMPLATE_FILE_VERSION) {
+                Log.w(TAG, "Ignoring wake word templates with unknown version");
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                float[][] template = new float[in.readInt()][MfccExtractor.NUM_COEFFS];
+                for (float[] frame : template) {
+                    for (int c = 0; c < frame.length; c++) {
+                        frame[c] = in.readFloat();
+                    }
+                }
+                loaded.add(template);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading wake word templates: " + e.getMessage());
+            return 0;
+        }
+        for (float[][] template : loaded) {
+            addTemplate(template);
+        }
+        return loaded.size();
+    }
+
+    /**
+     * Streaming subsequence DTW of one template against the live feature stream.
+     *
+     * Keeps a single column of the cost matrix, indexed by template frame, and
+     * advances it one input frame at a time. A match may start at any input frame,
+     * so the keyword is found wherever it occurs in the utterance. At most
+     * {@link #MAX_VERTICAL_STEPS} template frames in a row may align to the same
+     * input frame, so a whole template cannot collapse onto a single frame.
+     */
+    private static final class TemplateMatcher {
+        private static final int MAX_VERTICAL_STEPS = 2;
+
+        final float[][] template;
+        private float[] cost;
+        private float[] previousCost;
+        private int[] pathLength;
+        private int[] previousPathLength;
+        // Vertical steps in a row ending at each cell of the current column
+        private final int[] verticalSteps;
+
+        TemplateMatcher(float[][] template) {
+            this.template = template;
+            this.cost = new float[template.length + 1];
+            this.previousCost = new float[template.length + 1];
+            this.pathLength = new int[template.length + 1];
+            this.previousPathLength = new int[template.length + 1];
+            this.verticalSteps = new int[template.length + 1];
+            reset();
+        }
+
+        void reset() {
+            Arrays.fill(previousCost, Float.POSITIVE_INFINITY);
+            Arrays.fill(previousPathLength, 0);
+        }
+
+        /**
+         * Adds one unit-length feature frame. Returns the mean per-frame distance of
+         * the best alignment of the whole template ending at this frame.
+         */
+        float push(float[] features) {
+            // Row 0 is free, so an alignment can begin at any frame
+            cost[0] = 0;
+            pathLength[0] = 0;
+            // Entering the template from the free row is where a path starts, not a vertical step
+            verticalSteps[0] = -1;
+            for (int i = 1; i <= template.length; i++) {
+                float distance = 1 - dot(template[i - 1], features);
+                float best = previousCost[i];
+                int length = previousPathLength[i];
+                int vertical = 0;
+                if (previousCost[i - 1] < best) {
+                    best = previousCost[i - 1];
+                    length = previousPathLength[i - 1];
+                }
+                if (cost[i - 1] < best && verticalSteps[i - 1] < MAX_VERTICAL_STEPS) {
+                    best = cost[i - 1];
+                    length = pathLength[i - 1];
+                    vertical = verticalSteps[i - 1] + 1;
+                }
+                cost[i] = best + distance;
+                pathLength[i] = length + 1;
+                verticalSteps[i] = vertical;
+            }
+            float[] swapCost = previousCost;
+            previousCost = cost;
+            cost = swapCost;
+            int[] swapLength = previousPathLength;
+            previousPathLength = pathLength;
+            pathLength = swapLength;
+            int last = template.length;
+            return previousCost[last] / previousPathLength[last];
+        }
+
+        private static float dot(float[] a, float[] b) {
+            float sum = 0;
+            for (int i = 0; i < a.length; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }
+    }
+}
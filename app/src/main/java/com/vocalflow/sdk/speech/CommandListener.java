@@ -1,232 +1,217 @@
 package com.vocalflow.sdk.speech;
 
-import android.content.Context;
-import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.speech.RecognitionListener;
-import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
 import android.util.Log;
 import java.util.ArrayList;
-import java.util.Locale;
 
+/**
+ * Listens for a spoken command on the shared recognizer.
+ *
+ * Starting takes the recognizer over from whichever mode had it; restarts
+ * after silence or errors are left to {@link SpeechRecognizerManager}. When a
+ * prompt is being spoken, listening starts the moment it ends, or, with
+ * barge-in enabled, as soon as the user talks over it.
+ */
 public class CommandListener {
     private static final String TAG = "CommandListener";
-    private final Context context;
-    private SpeechRecognizerManager speechRecognizerManager;
+    private final SpeechRecognizerManager speechRecognizerManager;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final PartialResultStabilizer partialResults = new PartialResultStabilizer();
     private OnCommandListener commandListener;
+    private TextToSpeechManager textToSpeech;
     private boolean isListening = false;
-    private boolean isProcessing = false;
-    private static final int RETRY_DELAY_MS = 2000;
-    private static final int TRANSITION_DELAY_MS = 1000; // Delay after wake word detection
-    private static final int TTS_COOLDOWN_MS = 3000; // Delay after TTS to prevent feedback
-    private static final int INITIAL_DELAY_MS = 4000; // Delay after initialization to prevent picking up greeting
+    private boolean waitingForPrompt = false;
+    private boolean bargeIn = false;
+    // Upper bound on waiting for a prompt, in case the TTS engine never reports back
+    private static final int MAX_PROMPT_WAIT_MS = 15000;
 
     public interface OnCommandListener {
         void onCommandReceived(String command);
         void onError(int error);
+
+        /**
+         * Called while the user is still speaking, each time the leading words of
+         * the transcription settle. Work started here is speculative: the final
+         * command passed to {@link #onCommandReceived} may turn out different.
+         */
+        default void onPartialCommand(String stablePrefix) {}
     }
 
-    public CommandListener(Context context) {
-        this.context = context;
-        setupSpeechRecognizer();
+    public CommandListener(SpeechRecognizerManager speechRecognizerManager) {
+        this.speechRecognizerManager = speechRecognizerManager;
     }
 
-    private void setupSpeechRecognizer() {
-        Log.d(TAG, "Setting up speech recognizer");
-        if (speechRecognizerManager != null) {
-            speechRecognizerManager.destroy();
-        }
-        speechRecognizerManager = new SpeechRecognizerManager(context);
-        speechRecognizerManager.setRecognitionListener(new RecognitionListener() {
-            @Override
-            public void onReadyForSpeech(Bundle params) {
-                Log.d(TAG, "Ready for speech");
-                isProcessing = false;
-            }
+    private final RecognitionListener recognitionListener = new RecognitionListener() {
+        @Override
+        public void onReadyForSpeech(Bundle params) {
+            Log.d(TAG, "Ready for speech");
+            partialResults.reset();
+        }
 
-            @Override
-            public void onBeginningOfSpeech() {
-                Log.d(TAG, "Beginning of speech");
-            }
+        @Override
+        public void onBeginningOfSpeech() {
+            Log.d(TAG, "Beginning of speech");
+        }
 
-            @Override
-            public void onRmsChanged(float rmsdB) {
-                // Not needed for command recognition
-            }
+        @Override
+        public void onRmsChanged(float rmsdB) {
+            // Not needed for command recognition
+        }
 
-            @Override
-            public void onBufferReceived(byte[] buffer) {
-                // Not needed for command recognition
-            }
+        @Override
+        public void onBufferReceived(byte[] buffer) {
+            // Not needed for command recognition
+        }
 
-            @Override
-            public void onEndOfSpeech() {
-                Log.d(TAG, "End of speech");
+        @Override
+        public void onEndOfSpeech() {
+            Log.d(TAG, "End of speech");
+        }
+
+        @Override
+        public void onError(int error) {
+            Log.e(TAG, "Command recognition error: " + error);
+            if (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT) {
+                Log.d(TAG, "No speech recognized, waiting for voice activity");
+            }
+            if (commandListener != null) {
+                commandListener.onError(error);
             }
+        }
 
-            @Override
-            public void onError(int error) {
-                Log.e(TAG, "Command recognition error: " + error);
-                isProcessing = false;
-                
+        @Override
+        public void onResults(Bundle results) {
+            ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+            if (matches != null && !matches.isEmpty()) {
+                String command = matches.get(0);
+                Log.d(TAG, "Received transcription: " + command);
                 if (commandListener != null) {
-                    commandListener.onError(error);
-                }
-                
-                if (!isListening) {
-                    Log.d(TAG, "Not restarting - not listening");
-                    return;
-                }
-
-                // Handle specific error codes
-                if (error == SpeechRecognizer.ERROR_NO_MATCH) {
-                    Log.d(TAG, "No match detected, continuing to listen");
-                    int delay = RETRY_DELAY_MS;
-                    new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        if (isListening && !isProcessing) {
-                            Log.d(TAG, "Restarting after no match");
-                            startListening();
-                        }
-                    }, delay);
-                } else if (error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT) {
-                    Log.d(TAG, "Speech timeout, continuing to listen");
-                    int delay = RETRY_DELAY_MS;
-                    new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        if (isListening && !isProcessing) {
-                            Log.d(TAG, "Restarting after timeout");
-                            startListening();
-                        }
-                    }, delay);
-                } else if (error == SpeechRecognizer.ERROR_RECOGNIZER_BUSY) {
-                    Log.d(TAG, "Recognizer busy, recreating");
-                    speechRecognizerManager.destroy();
-                    setupSpeechRecognizer();
-                    int delay = RETRY_DELAY_MS * 2;
-                    new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        if (isListening && !isProcessing) {
-                            Log.d(TAG, "Restarting after busy error");
-                            startListening();
-                        }
-                    }, delay);
+                    commandListener.onCommandReceived(command);
                 }
+            } else {
+                Log.d(TAG, "No matches in results");
             }
+        }
 
-            @Override
-            public void onResults(Bundle results) {
-                isProcessing = false;
-                
-                ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-                if (matches != null && !matches.isEmpty()) {
-                    String command = matches.get(0);
-                    Log.d(TAG, "Received transcription: " + command);
-                    if (commandListener != null) {
-                        commandListener.onCommandReceived(command);
-                    }
-                } else {
-                    Log.d(TAG, "No matches in results");
-                }
-                
-                // Add delay after receiving results to prevent TTS feedback
-                if (isListening && !isProcessing) {
-                    Log.d(TAG, "Waiting for TTS cooldown before continuing to listen");
-                    new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        if (isListening && !isProcessing) {
-                            Log.d(TAG, "Continuing to listen for commands after cooldown");
-                            startListening();
-                        }
-                    }, TTS_COOLDOWN_MS);
-                }
+        @Override
+        public void onPartialResults(Bundle bundle) {
+            ArrayList<String> matches = bundle.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+            if (matches == null || matches.isEmpty() || commandListener == null) {
+                return;
             }
-
-            @Override
-            public void onPartialResults(Bundle partialResults) {
-                // Not needed for command recognition
+            String stablePrefix = partialResults.update(matches.get(0));
+            if (stablePrefix != null) {
+                Log.d(TAG, "Stable partial transcription: " + stablePrefix);
+                commandListener.onPartialCommand(stablePrefix);
             }
+        }
+
+        @Override
+        public void onEvent(int eventType, Bundle params) {
+            // Not needed for command recognition
+        }
+    };
+
+    private final TextToSpeechManager.PlaybackListener playbackListener = new TextToSpeechManager.PlaybackListener() {
+        @Override
+        public void onSpeakingStarted() {}
 
-            @Override
-            public void onEvent(int eventType, Bundle params) {
-                // Not needed for command recognition
+        @Override
+        public void onSpeakingFinished() {
+            if (waitingForPrompt && isListening) {
+                Log.d(TAG, "Prompt finished, starting command recognition");
+                startListening();
             }
-        });
-    }
+        }
+    };
+
+    private final Runnable promptTimeout = () -> {
+        if (waitingForPrompt && isListening) {
+            Log.w(TAG, "Prompt did not report completion, starting command recognition");
+            startListening();
+        }
+    };
 
     public void setCommandListener(OnCommandListener listener) {
         this.commandListener = listener;
     }
 
+    /**
+     * The speech output to wait for before listening, so prompts are not transcribed as commands.
+     */
+    public void setTextToSpeech(TextToSpeechManager textToSpeech) {
+        if (this.textToSpeech != null) {
+            this.textToSpeech.removePlaybackListener(playbackListener);
+        }
+        this.textToSpeech = textToSpeech;
+        if (textToSpeech != null) {
+            textToSpeech.addPlaybackListener(playbackListener);
+        }
+    }
+
+    /**
+     * With barge-in, the user can start a command while a prompt is still playing;
+     * the prompt is cut off as soon as their voice is heard.
+     */
+    public void setBargeInEnabled(boolean bargeIn) {
+        this.bargeIn = bargeIn;
+    }
+
     public void startListening() {
         Log.d(TAG, "Starting command recognition");
-        if (isProcessing) {
-            Log.d(TAG, "Skipping start listening - already processing");
+        isListening = true;
+        waitingForPrompt = false;
+        handler.removeCallbacks(promptTimeout);
+        partialResults.reset();
+        speechRecognizerManager.setRecognitionListener(recognitionListener);
+        speechRecognizerManager.setPartialResults(true);
+        speechRecognizerManager.startListening();
+    }
+
+    /**
+     * Starts listening once the prompt being spoken, if any, has finished.
+     */
+    public void startListeningAfterPrompt() {
+        if (textToSpeech == null || !textToSpeech.isSpeaking()) {
+            startListening();
             return;
         }
-        
         isListening = true;
-        isProcessing = true;
-        
-        if (speechRecognizerManager == null) {
-            Log.d(TAG, "Creating new speech recognizer manager");
-            setupSpeechRecognizer();
-        }
-        
-        try {
-            Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
-            intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
-            intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, false);
-            intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 3);
-            intent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.getPackageName());
-            intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_COMPLETE_SILENCE_LENGTH_MILLIS, 1000);
-            intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_POSSIBLY_COMPLETE_SILENCE_LENGTH_MILLIS, 1000);
-            intent.putExtra(RecognizerIntent.EXTRA_SPEECH_INPUT_MINIMUM_LENGTH_MILLIS, 1000);
-            
-            Log.d(TAG, "Starting speech recognition");
-            speechRecognizerManager.startListening();
-        } catch (Exception e) {
-            Log.e(TAG, "Error starting recognition: " + e.getMessage());
-            isProcessing = false;
-            
-            new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                if (isListening && !isProcessing) {
-                    Log.d(TAG, "Retrying after error");
-                    setupSpeechRecognizer();
-                    startListening();
-                }
-            }, RETRY_DELAY_MS);
+        waitingForPrompt = true;
+        handler.removeCallbacks(promptTimeout);
+        handler.postDelayed(promptTimeout, MAX_PROMPT_WAIT_MS);
+        if (bargeIn) {
+            Log.d(TAG, "Listening for barge-in while the prompt plays");
+            speechRecognizerManager.setRecognitionListener(recognitionListener);
+            speechRecognizerManager.setPartialResults(true);
+            speechRecognizerManager.startListeningOnSpeech(() -> {
+                waitingForPrompt = false;
+                handler.removeCallbacks(promptTimeout);
+                textToSpeech.stop();
+            });
+        } else {
+            Log.d(TAG, "Waiting for the prompt to finish before listening");
         }
     }
 
-    public void startListeningWithDelay() {
-        Log.d(TAG, "Scheduling command recognition with initial delay");
-        isListening = true;  // Set the flag before starting the delay
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            if (isListening && !isProcessing) {
-                Log.d(TAG, "Starting command recognition after initial delay");
-                startListening();
-            } else {
-                Log.d(TAG, "Skipping start listening - isListening: " + isListening + ", isProcessing: " + isProcessing);
-            }
-        }, INITIAL_DELAY_MS);
-    }
-
     public void stopListening() {
         Log.d(TAG, "Stopping command recognition");
-        isListening = false;
-        isProcessing = false;
-        if (speechRecognizerManager != null) {
+        waitingForPrompt = false;
+        handler.removeCallbacks(promptTimeout);
+        if (isListening) {
+            isListening = false;
             speechRecognizerManager.stopListening();
         }
     }
 
     public void destroy() {
         Log.d(TAG, "Destroying command listener");
-        isListening = false;
-        isProcessing = false;
-        if (speechRecognizerManager != null) {
-            speechRecognizerManager.destroy();
-            speechRecognizerManager = null;
-        }
+        stopListening();
+        setTextToSpeech(null);
+        commandListener = null;
     }
-} 
\ No newline at end of file
+}
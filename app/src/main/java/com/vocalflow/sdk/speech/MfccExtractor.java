@@ -0,0 +1,140 @@
+package com.vocalflow.sdk.speech;
+
+/**
+ * Computes mel-frequency cepstral coefficients for one frame of 16 kHz audio.
+ *
+ * Every table (window, FFT twiddles, mel filters, DCT) is built once in the
+ * constructor and all scratch space is reused, so {@link #compute} does not
+ * allocate. Not thread-safe; each audio thread needs its own instance.
+ */
+class MfccExtractor {
+    static final int SAMPLE_RATE = 16000;
+    static final int FRAME_LENGTH = 400;  // 25 ms
+    static final int NUM_COEFFS = 12;     // c1..c12; c0 tracks loudness and is left out
+    private static final int FFT_SIZE = 512;
+    private static final int MEL_FILTERS = 26;
+    private static final float PRE_EMPHASIS = 0.97f;
+    private static final float MIN_ENERGY = 1e-10f;
+
+    private final float[] window = new float[FRAME_LENGTH];
+    private final float[] cos = new float[FFT_SIZE / 2];
+    private final float[] sin = new float[FFT_SIZE / 2];
+    private final int[] bitReverse = new int[FFT_SIZE];
+    private final int[] filterEdges = new int[MEL_FILTERS + 2];
+    private final float[][] dct = new float[NUM_COEFFS][MEL_FILTERS];
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    private final float[] logMel = new float[MEL_FILTERS];
+
+    MfccExtractor() {
+        for (int i = 0; i < FRAME_LENGTH; i++) {
+            window[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (FRAME_LENGTH - 1)));
+        }
+        for (int i = 0; i < FFT_SIZE / 2; i++) {
+            cos[i] = (float) Math.cos(-2 * Math.PI * i / FFT_SIZE);
+            sin[i] = (float) Math.sin(-2 * Math.PI * i / FFT_SIZE);
+        }
+        int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+        for (int i = 0; i < FFT_SIZE; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        // Filter edges evenly spaced on the mel scale from 0 Hz to Nyquist
+        double maxMel = hzToMel(SAMPLE_RATE / 2.0);
+        for (int i = 0; i < filterEdges.length; i++) {
+            double hz = melToHz(maxMel * i / (filterEdges.length - 1));
+            filterEdges[i] = (int) Math.floor((FFT_SIZE + 1) * hz / SAMPLE_RATE);
+        }
+        for (int c = 0; c < NUM_COEFFS; c++) {
+            for (int m = 0; m < MEL_FILTERS; m++) {
+                dct[c][m] = (float) Math.cos(Math.PI * (c + 1) * (m + 0.5) / MEL_FILTERS);
+            }
+        }
+    }
+
+    /**
+     * Writes the coefficients for {@code frame} ({@link #FRAME_LENGTH} samples in
+     * [-1, 1]) into {@code out}, which must hold {@link #NUM_COEFFS} values.
+     */
+    void compute(float[] frame, float[] out) {
+        re[0] = frame[0] * window[0];
+        for (int i = 1; i < FRAME_LENGTH; i++) {
+            re[i] = (frame[i] - PRE_EMPHASIS * frame[i - 1]) * window[i];
+        }
+        for (int i = FRAME_LENGTH; i < FFT_SIZE; i++) {
+            re[i] = 0;
+        }
+        for (int i = 0; i < FFT_SIZE; i++) {
+            im[i] = 0;
+        }
+        fft();
+
+        // Power spectrum, written back over the real part
+        for (int k = 0; k <= FFT_SIZE / 2; k++) {
+            re[k] = re[k] * re[k] + im[k] * im[k];
+        }
+
+        for (int m = 0; m < MEL_FILTERS; m++) {
+            int start = filterEdges[m];
+            int center = filterEdges[m + 1];
+            int end = filterEdges[m + 2];
+            float energy = 0;
+            for (int k = start; k < center; k++) {
+                energy += re[k] * (k - start) / (float) Math.max(center - start, 1);
+            }
+            for (int k = center; k < end; k++) {
+                energy += re[k] * (end - k) / (float) Math.max(end - center, 1);
+            }
+            logMel[m] = (float) Math.log(Math.max(energy, MIN_ENERGY));
+        }
+
+        for (int c = 0; c < NUM_COEFFS; c++) {
+            float sum = 0;
+            float[] basis = dct[c];
+            for (int m = 0; m < MEL_FILTERS; m++) {
+                sum += logMel[m] * basis[m];
+            }
+            out[c] = sum;
+        }
+    }
+
+    // In-place iterative radix-2 FFT over re/im
+    private void fft() {
+        for (int i = 0; i < FFT_SIZE; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= FFT_SIZE; size <<= 1) {
+            int half = size >> 1;
+            int step = FFT_SIZE / size;
+            for (int start = 0; start < FFT_SIZE; start += size) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    float tr = re[b] * wr - im[b] * wi;
+                    float ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    private static double hzToMel(double hz) {
+        return 2595 * Math.log10(1 + hz / 700);
+    }
+
+    private static double melToHz(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+}
@@ -0,0 +1,49 @@
+package com.vocalflow.sdk.speech;
+
+/**
+ * Finds the part of a streaming transcription that has stopped changing.
+ *
+ * Recognizers revise the tail of their partial hypotheses as more audio comes
+ * in, so only the leading words two consecutive hypotheses agree on are treated
+ * as stable. Each time that stable prefix grows it is reported once.
+ */
+class PartialResultStabilizer {
+    private static final String[] NO_WORDS = new String[0];
+
+    private String[] previousWords = NO_WORDS;
+    private int stableWords = 0;
+
+    /**
+     * Feeds the next partial hypothesis. Returns the stable prefix if it grew,
+     * or null if there is nothing new to act on.
+     */
+    String update(String hypothesis) {
+        String trimmed = hypothesis.trim();
+        String[] words = trimmed.isEmpty() ? NO_WORDS : trimmed.split("\\s+");
+        int common = 0;
+        int limit = Math.min(words.length, previousWords.length);
+        while (common < limit && words[common].equalsIgnoreCase(previousWords[common])) {
+            common++;
+        }
+        previousWords = words;
+        if (common <= stableWords) {
+            // The recognizer revised words it had already settled on
+            stableWords = common;
+            return null;
+        }
+        stableWords = common;
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < common; i++) {
+            if (i > 0) {
+                prefix.append(' ');
+            }
+            prefix.append(words[i]);
+        }
+        return prefix.toString();
+    }
+
+    void reset() {
+        previousWords = NO_WORDS;
+        stableWords = 0;
+    }
+}
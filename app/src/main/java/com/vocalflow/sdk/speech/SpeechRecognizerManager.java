@@ -11,12 +11,37 @@ import android.os.Handler;
 import android.os.Looper;
 import java.util.Locale;
 
+/**
+ * Owns the app's single SpeechRecognizer for as long as the voice agent runs.
+ *
+ * Wake word and command recognition share it: switching modes swaps the
+ * listener and the intent extras instead of destroying one recognizer and
+ * warming up another. The manager also owns restarting. At most one session is
+ * in flight at a time, and a new one is only started once the previous one has
+ * delivered its results or error, so callers never trip ERROR_RECOGNIZER_BUSY
+ * by starting on top of a live session.
+ *
+ * After results, and after the first few sessions that time out with nobody
+ * speaking, the recognizer is restarted straight away. Only once the user has
+ * been quiet for {@link #GATE_AFTER_IDLE_TIMEOUTS} sessions in a row is it held
+ * off until voice activity is heard, since the gate only fires once speech has
+ * started and the recognizer misses the first syllables.
+ */
 public class SpeechRecognizerManager {
     private static final String TAG = "SpeechRecognizerManager";
     private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
     private SpeechRecognizer speechRecognizer;
     private RecognitionListener recognitionListener;
     private boolean isListening = false;
+    // True from startListening until the session reports results or an error
+    private boolean sessionActive = false;
+    private boolean partialResults = false;
+    private final VoiceActivityGate voiceActivityGate = new VoiceActivityGate();
+    private int gatedRestarts = 0;
+    // Sessions in a row that ended without anybody speaking
+    private int idleTimeouts = 0;
+    private static final int GATE_AFTER_IDLE_TIMEOUTS = 3;
     private int retryCount = 0;
     private static final int MAX_RETRY_COUNT = 3;
     private static final int INITIAL_RETRY_DELAY = 1000; // 1 second
@@ -33,6 +58,7 @@ public class SpeechRecognizerManager {
                     speechRecognizer.destroy();
                 }
                 speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context);
+                speechRecognizer.setRecognitionListener(forwardingListener);
                 Log.d(TAG, "SpeechRecognizer initialized successfully");
             } catch (Exception e) {
                 Log.e(TAG, "Failed to create SpeechRecognizer: " + e.getMessage());
@@ -42,136 +68,213 @@ public class SpeechRecognizerManager {
         }
     }
 
+    /**
+     * Live RMS and speech/silence state of the microphone while waiting for speech.
+     */
+    public VoiceActivityDetector getVoiceActivity() {
+        return voiceActivityGate.getDetector();
+    }
+
+    /**
+     * How many recognizer restarts have waited for speech instead of starting blind.
+     */
+    public int getGatedRestarts() {
+        return gatedRestarts;
+    }
+
+    /**
+     * Whether the recognizer should report partial hypotheses while the user is still speaking.
+     */
+    public void setPartialResults(boolean partialResults) {
+        this.partialResults = partialResults;
+    }
+
+    /**
+     * Routes recognizer callbacks to the given listener from now on. The
+     * recognizer itself is kept; this is how modes hand it over to each other.
+     */
     public void setRecognitionListener(RecognitionListener listener) {
         this.recognitionListener = listener;
-        if (speechRecognizer != null) {
-            speechRecognizer.setRecognitionListener(new RecognitionListener() {
-                @Override
-                public void onReadyForSpeech(Bundle params) {
-                    Log.d(TAG, "Ready for speech");
-                    if (recognitionListener != null) {
-                        recognitionListener.onReadyForSpeech(params);
-                    }
-                }
+    }
 
-                @Override
-                public void onBeginningOfSpeech() {
-                    Log.d(TAG, "Beginning of speech");
-                    if (recognitionListener != null) {
-                        recognitionListener.onBeginningOfSpeech();
-                    }
-                }
+    public boolean isListening() {
+        return isListening;
+    }
 
-                @Override
-                public void onRmsChanged(float rmsdB) {
-                    if (recognitionListener != null) {
-                        recognitionListener.onRmsChanged(rmsdB);
-                    }
-                }
+    private final RecognitionListener forwardingListener = new RecognitionListener() {
+        @Override
+        public void onReadyForSpeech(Bundle params) {
+            Log.d(TAG, "Ready for speech");
+            retryCount = 0;
+            if (recognitionListener != null) {
+                recognitionListener.onReadyForSpeech(params);
+            }
+        }
 
-                @Override
-                public void onBufferReceived(byte[] buffer) {
-                    if (recognitionListener != null) {
-                        recognitionListener.onBufferReceived(buffer);
-                    }
-                }
+        @Override
+        public void onBeginningOfSpeech() {
+            Log.d(TAG, "Beginning of speech");
+            idleTimeouts = 0;
+            if (recognitionListener != null) {
+                recognitionListener.onBeginningOfSpeech();
+            }
+        }
 
-                @Override
-                public void onEndOfSpeech() {
-                    Log.d(TAG, "End of speech");
-                    if (recognitionListener != null) {
-                        recognitionListener.onEndOfSpeech();
-                    }
-                }
+        @Override
+        public void onRmsChanged(float rmsdB) {
+            if (recognitionListener != null) {
+                recognitionListener.onRmsChanged(rmsdB);
+            }
+        }
+
+        @Override
+        public void onBufferReceived(byte[] buffer) {
+            if (recognitionListener != null) {
+                recognitionListener.onBufferReceived(buffer);
+            }
+        }
+
+        @Override
+        public void onEndOfSpeech() {
+            Log.d(TAG, "End of speech");
+            if (recognitionListener != null) {
+                recognitionListener.onEndOfSpeech();
+            }
+        }
 
-                @Override
-                public void onError(int error) {
-                    Log.e(TAG, "Speech recognition error: " + error);
-                    
-                    if (error == SpeechRecognizer.ERROR_RECOGNIZER_BUSY) {
-                        retryCount++;
-                        if (retryCount > MAX_RETRY_COUNT) {
-                            Log.e(TAG, "Too many retries, resetting speech recognizer");
-                            retryCount = 0;
-                            initializeSpeechRecognizer();
-                            if (isListening) {
-                                startListening();
-                            }
-                            return;
-                        }
-                        
-                        // Exponential backoff
-                        int delay = INITIAL_RETRY_DELAY * (1 << (retryCount - 1));
-                        Log.d(TAG, "Retrying after " + delay + "ms (attempt " + retryCount + ")");
-                        
-                        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                            if (isListening) {
-                                startListening();
-                            }
-                        }, delay);
+        @Override
+        public void onError(int error) {
+            Log.e(TAG, "Speech recognition error: " + error);
+            sessionActive = false;
+
+            if (error == SpeechRecognizer.ERROR_NO_MATCH || error == SpeechRecognizer.ERROR_SPEECH_TIMEOUT) {
+                // Nobody spoke; after a few of these, wait for speech instead of timing out again
+                retryCount = 0;
+                idleTimeouts++;
+                if (isListening) {
+                    if (idleTimeouts >= GATE_AFTER_IDLE_TIMEOUTS) {
+                        startListeningOnSpeech();
                     } else {
-                        // For other errors, use a shorter fixed delay
-                        retryCount = 0;
-                        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                            if (isListening) {
-                                startListening();
-                            }
-                        }, INITIAL_RETRY_DELAY);
-                    }
-                    
-                    if (recognitionListener != null) {
-                        recognitionListener.onError(error);
+                        startListening();
                     }
                 }
-
-                @Override
-                public void onResults(Bundle results) {
-                    Log.d(TAG, "Got results");
-                    if (recognitionListener != null) {
-                        recognitionListener.onResults(results);
-                    }
-                    
-                    // Continue listening if still active
+            } else if (error == SpeechRecognizer.ERROR_RECOGNIZER_BUSY) {
+                retryCount++;
+                if (retryCount > MAX_RETRY_COUNT) {
+                    Log.e(TAG, "Too many retries, resetting speech recognizer");
+                    retryCount = 0;
+                    initializeSpeechRecognizer();
                     if (isListening) {
-                        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                            startListening();
-                        }, 500);
+                        startListening();
                     }
+                } else {
+                    // Exponential backoff
+                    int delay = INITIAL_RETRY_DELAY * (1 << (retryCount - 1));
+                    Log.d(TAG, "Retrying after " + delay + "ms (attempt " + retryCount + ")");
+                    handler.postDelayed(restart, delay);
                 }
+            } else {
+                // For other errors, use a shorter fixed delay
+                retryCount = 0;
+                handler.postDelayed(restart, INITIAL_RETRY_DELAY);
+            }
 
-                @Override
-                public void onPartialResults(Bundle partialResults) {
-                    if (recognitionListener != null) {
-                        recognitionListener.onPartialResults(partialResults);
-                    }
-                }
+            if (recognitionListener != null) {
+                recognitionListener.onError(error);
+            }
+        }
 
-                @Override
-                public void onEvent(int eventType, Bundle params) {
-                    if (recognitionListener != null) {
-                        recognitionListener.onEvent(eventType, params);
-                    }
-                }
-            });
-            Log.d(TAG, "Recognition listener set");
+        @Override
+        public void onResults(Bundle results) {
+            Log.d(TAG, "Got results");
+            sessionActive = false;
+            idleTimeouts = 0;
+            if (recognitionListener != null) {
+                recognitionListener.onResults(results);
+            }
+
+            // Continue listening, unless the listener stopped us; a follow-up often comes right away
+            if (isListening && !sessionActive) {
+                startListening();
+            }
         }
+
+        @Override
+        public void onPartialResults(Bundle partialResults) {
+            if (recognitionListener != null) {
+                recognitionListener.onPartialResults(partialResults);
+            }
+        }
+
+        @Override
+        public void onEvent(int eventType, Bundle params) {
+            if (recognitionListener != null) {
+                recognitionListener.onEvent(eventType, params);
+            }
+        }
+    };
+
+    private final Runnable restart = () -> {
+        if (isListening) {
+            startListening();
+        }
+    };
+
+    /**
+     * Keeps the recognizer stopped until voice activity is heard, then starts it.
+     */
+    public void startListeningOnSpeech() {
+        startListeningOnSpeech(null);
+    }
+
+    /**
+     * Like {@link #startListeningOnSpeech()}, running {@code onSpeech} just before
+     * the recognizer starts, e.g. to cut off a prompt the user is talking over.
+     */
+    public void startListeningOnSpeech(Runnable onSpeech) {
+        handler.removeCallbacks(restart);
+        isListening = true;
+        gatedRestarts++;
+        voiceActivityGate.arm(() -> {
+            if (isListening) {
+                Log.d(TAG, "Voice activity detected, starting recognizer");
+                if (onSpeech != null) {
+                    onSpeech.run();
+                }
+                startListening();
+            }
+        });
     }
 
     public void startListening() {
+        handler.removeCallbacks(restart);
+        if (voiceActivityGate.isArmed()) {
+            // Free the microphone for the recognizer
+            voiceActivityGate.disarm();
+        }
+        isListening = true;
+        if (sessionActive) {
+            Log.d(TAG, "Session already in progress, not starting another");
+            return;
+        }
+        if (speechRecognizer == null) {
+            initializeSpeechRecognizer();
+        }
         if (speechRecognizer != null) {
             try {
                 Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
                 intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
                 intent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.US);
-                intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, false);
+                intent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, partialResults);
                 intent.putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 3);
                 intent.putExtra(RecognizerIntent.EXTRA_CALLING_PACKAGE, context.getPackageName());
-                
+
                 Log.d(TAG, "Starting speech recognition");
-                isListening = true;
+                sessionActive = true;
                 speechRecognizer.startListening(intent);
             } catch (Exception e) {
                 Log.e(TAG, "Error starting speech recognition: " + e.getMessage());
+                sessionActive = false;
                 if (recognitionListener != null) {
                     recognitionListener.onError(SpeechRecognizer.ERROR_CLIENT);
                 }
@@ -179,12 +282,19 @@ public class SpeechRecognizerManager {
         }
     }
 
+    /**
+     * Ends the current session without releasing the recognizer, so the next
+     * mode can start on it right away.
+     */
     public void stopListening() {
         Log.d(TAG, "Stopping speech recognition");
         isListening = false;
+        sessionActive = false;
+        idleTimeouts = 0;
+        handler.removeCallbacks(restart);
+        voiceActivityGate.disarm();
         if (speechRecognizer != null) {
             try {
-                speechRecognizer.stopListening();
                 speechRecognizer.cancel();
             } catch (Exception e) {
                 Log.e(TAG, "Error stopping speech recognition: " + e.getMessage());
@@ -195,9 +305,11 @@ public class SpeechRecognizerManager {
     public void destroy() {
         Log.d(TAG, "Destroying SpeechRecognizer");
         isListening = false;
+        sessionActive = false;
+        handler.removeCallbacks(restart);
+        voiceActivityGate.disarm();
         if (speechRecognizer != null) {
             try {
-                speechRecognizer.stopListening();
                 speechRecognizer.cancel();
                 speechRecognizer.destroy();
                 speechRecognizer = null;
@@ -206,4 +318,4 @@ public class SpeechRecognizerManager {
             }
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,15 +1,46 @@
 package com.vocalflow.sdk.speech;
 
 import android.content.Context;
+import android.media.AudioAttributes;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Speaks prompts and tells the rest of the voice agent exactly when it is talking.
+ *
+ * Every utterance gets an ID and is tracked through
+ * {@link UtteranceProgressListener}, so listening can resume the moment the
+ * last queued utterance ends instead of after a fixed cooldown. Speaking counts
+ * from the call to {@link #speak}, not from when audio starts, so nobody starts
+ * listening in the gap before playback begins.
+ */
 public class TextToSpeechManager {
     private static final String TAG = "TextToSpeechManager";
+
+    /**
+     * Called on the main thread when speech starts and when the queue has fully drained.
+     */
+    public interface PlaybackListener {
+        void onSpeakingStarted();
+        void onSpeakingFinished();
+    }
+
     private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<PlaybackListener> playbackListeners = new CopyOnWriteArrayList<>();
+    // Utterances queued and not yet finished; only touched on the main thread
+    private final Set<String> pendingUtterances = new HashSet<>();
     private TextToSpeech textToSpeech;
     private boolean isInitialized = false;
+    private int nextUtteranceId = 0;
 
     public TextToSpeechManager(Context context) {
         this.context = context;
@@ -33,11 +64,113 @@ public class TextToSpeechManager {
                 }
             }
         });
+        textToSpeech.setAudioAttributes(new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_ASSISTANT)
+            .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+            .build());
+        textToSpeech.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {
+                Log.d(TAG, "Utterance started: " + utteranceId);
+            }
+
+            @Override
+            public void onDone(String utteranceId) {
+                mainHandler.post(() -> finish(utteranceId));
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+                Log.e(TAG, "Utterance failed: " + utteranceId);
+                mainHandler.post(() -> finish(utteranceId));
+            }
+
+            @Override
+            public void onStop(String utteranceId, boolean interrupted) {
+                mainHandler.post(() -> finish(utteranceId));
+            }
+        });
+    }
+
+    public void addPlaybackListener(PlaybackListener listener) {
+        playbackListeners.add(listener);
+    }
+
+    public void removePlaybackListener(PlaybackListener listener) {
+        playbackListeners.remove(listener);
+    }
+
+    /**
+     * True from the moment something is queued until the queue has drained.
+     * Must be called on the main thread.
+     */
+    public boolean isSpeaking() {
+        return !pendingUtterances.isEmpty();
+    }
+
+    /**
+     * Replaces anything being spoken with {@code text}. Returns the utterance ID,
+     * or null if nothing was spoken.
+     */
+    public String speak(String text) {
+        return speak(text, TextToSpeech.QUEUE_FLUSH);
+    }
+
+    /**
+     * Speaks {@code text} with the given queue mode ({@link TextToSpeech#QUEUE_FLUSH}
+     * or {@link TextToSpeech#QUEUE_ADD}). Must be called on the main thread.
+     * Returns the utterance ID, or null if nothing was spoken.
+     */
+    public String speak(String text, int queueMode) {
+        if (!isInitialized || textToSpeech == null) {
+            Log.w(TAG, "TextToSpeech not ready, dropping: " + text);
+            return null;
+        }
+        boolean wasSpeaking = isSpeaking();
+        if (queueMode == TextToSpeech.QUEUE_FLUSH) {
+            // Flushed utterances may never report back
+            pendingUtterances.clear();
+        }
+        String utteranceId = "vocalflow-" + (nextUtteranceId++);
+        if (textToSpeech.speak(text, queueMode, Bundle.EMPTY, utteranceId) != TextToSpeech.SUCCESS) {
+            Log.e(TAG, "Failed to queue utterance: " + text);
+            if (wasSpeaking && pendingUtterances.isEmpty()) {
+                notifyFinished();
+            }
+            return null;
+        }
+        pendingUtterances.add(utteranceId);
+        if (!wasSpeaking) {
+            for (PlaybackListener listener : playbackListeners) {
+                listener.onSpeakingStarted();
+            }
+        }
+        return utteranceId;
+    }
+
+    /**
+     * Cuts speech off immediately, e.g. because the user started talking over it.
+     */
+    public void stop() {
+        if (textToSpeech != null) {
+            textToSpeech.stop();
+        }
+        if (!pendingUtterances.isEmpty()) {
+            pendingUtterances.clear();
+            notifyFinished();
+        }
+    }
+
+    private void finish(String utteranceId) {
+        if (pendingUtterances.remove(utteranceId) && pendingUtterances.isEmpty()) {
+            notifyFinished();
+        }
     }
 
-    public void speak(String text) {
-        if (isInitialized && textToSpeech != null) {
-            textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, null, null);
+    private void notifyFinished() {
+        Log.d(TAG, "Finished speaking");
+        for (PlaybackListener listener : playbackListeners) {
+            listener.onSpeakingFinished();
         }
     }
 
@@ -54,10 +187,12 @@ public class TextToSpeechManager {
     }
 
     public void destroy() {
+        playbackListeners.clear();
+        pendingUtterances.clear();
         if (textToSpeech != null) {
             textToSpeech.stop();
             textToSpeech.shutdown();
             textToSpeech = null;
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+package com.vocalflow.sdk.speech;
+
+/**
+ * Frame-by-frame voice activity detection from energy and zero-crossing rate.
+ *
+ * A frame counts as speech when its RMS clears both a fixed minimum and an
+ * adaptive noise floor, and its zero-crossing rate is in the range of voiced
+ * speech (broadband hiss crosses zero far more often). Short blips are ignored
+ * by requiring a few speech frames in a row before switching to
+ * {@link State#SPEECH}, and a hangover keeps pauses between words from
+ * switching back too early.
+ *
+ * Processing is done by one audio thread; the metrics can be read from any thread.
+ */
+public class VoiceActivityDetector {
+    public enum State {
+        SILENCE,
+        SPEECH
+    }
+
+    private static final float MIN_SPEECH_RMS = 0.01f;        // about -40 dBFS
+    private static final float SPEECH_TO_NOISE_RATIO = 3f;
+    private static final float MAX_VOICED_ZCR = 0.35f;
+    private static final float NOISE_FLOOR_ALPHA = 0.05f;
+    // The floor also creeps up during "speech", so steady noise such as a fan stops counting after a while
+    private static final float NOISE_FLOOR_RISE_ALPHA = 0.002f;
+    private static final int ONSET_FRAMES = 3;
+    private static final int HANGOVER_FRAMES = 15;
+
+    private volatile float noiseFloor = MIN_SPEECH_RMS / SPEECH_TO_NOISE_RATIO;
+    private int speechRun = 0;
+    private int hangover = 0;
+    private volatile State state = State.SILENCE;
+    private volatile float rms = 0;
+    private volatile float zeroCrossingRate = 0;
+    private volatile long framesProcessed = 0;
+    private volatile long speechFrames = 0;
+    private volatile long speechSegments = 0;
+
+    /**
+     * Classifies one frame of 16-bit PCM and returns the resulting state.
+     */
+    public State process(short[] samples, int length) {
+        if (length <= 0) {
+            return state;
+        }
+        float sumSquares = 0;
+        int crossings = 0;
+        for (int i = 0; i < length; i++) {
+            float sample = samples[i] / 32768f;
+            sumSquares += sample * sample;
+            if (i > 0 && (samples[i] >= 0) != (samples[i - 1] >= 0)) {
+                crossings++;
+            }
+        }
+        float frameRms = (float) Math.sqrt(sumSquares / length);
+        float zcr = crossings / (float) length;
+
+        float threshold = Math.max(MIN_SPEECH_RMS, noiseFloor * SPEECH_TO_NOISE_RATIO);
+        boolean speech = frameRms > threshold && zcr < MAX_VOICED_ZCR;
+        noiseFloor += (speech ? NOISE_FLOOR_RISE_ALPHA : NOISE_FLOOR_ALPHA) * (frameRms - noiseFloor);
+
+        if (speech) {
+            speechRun++;
+            hangover = HANGOVER_FRAMES;
+            speechFrames++;
+        } else {
+            speechRun = 0;
+            if (hangover > 0) {
+                hangover--;
+            }
+        }
+        if (state == State.SILENCE && speechRun >= ONSET_FRAMES) {
+            state = State.SPEECH;
+            speechSegments++;
+        } else if (state == State.SPEECH && hangover == 0) {
+            state = State.SILENCE;
+        }
+
+        rms = frameRms;
+        zeroCrossingRate = zcr;
+        framesProcessed++;
+        return state;
+    }
+
+    public void reset() {
+        speechRun = 0;
+        hangover = 0;
+        state = State.SILENCE;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * RMS of the last frame, from 0 to 1.
+     */
+    public float getRms() {
+        return rms;
+    }
+
+    /**
+     * RMS of the last frame in dB relative to full scale.
+     */
+    public float getRmsDb() {
+        return (float) (20 * Math.log10(Math.max(rms, 1e-5f)));
+    }
+
+    public float getZeroCrossingRate() {
+        return zeroCrossingRate;
+    }
+
+    public float getNoiseFloor() {
+        return noiseFloor;
+    }
+
+    public long getFramesProcessed() {
+        return framesProcessed;
+    }
+
+    public long getSpeechFrames() {
+        return speechFrames;
+    }
+
+    /**
+     * How many times the state has switched from silence to speech.
+     */
+    public long getSpeechSegments() {
+        return speechSegments;
+    }
+}
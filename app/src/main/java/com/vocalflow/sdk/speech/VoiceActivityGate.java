@@ -0,0 +1,153 @@
+package com.vocalflow.sdk.speech;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.media.audiofx.AcousticEchoCanceler;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Holds off starting the speech recognizer until somebody is actually talking.
+ *
+ * While armed it reads 20 ms frames from the microphone into a reused buffer
+ * and runs them through a {@link VoiceActivityDetector}. As soon as speech
+ * starts it releases the microphone and runs the callback on the main thread,
+ * so the recognizer is only started when there is something to recognize.
+ * Where the device has one, an {@link AcousticEchoCanceler} is attached so
+ * the app's own speech output is not mistaken for the user talking.
+ *
+ * Disarming never blocks the caller. The audio thread notices within one frame
+ * and releases the microphone by itself; a re-arm waits for it on the new
+ * audio thread before opening the microphone again.
+ */
+class VoiceActivityGate {
+    private static final String TAG = "VoiceActivityGate";
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_LENGTH = 320;  // 20 ms
+
+    private final VoiceActivityDetector detector = new VoiceActivityDetector();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean armed = false;
+    // Bumped on every arm and disarm, so a stale detection cannot fire a newer callback
+    private volatile int generation = 0;
+    private Thread audioThread;
+
+    VoiceActivityDetector getDetector() {
+        return detector;
+    }
+
+    boolean isArmed() {
+        return armed;
+    }
+
+    /**
+     * Starts listening for speech; {@code onSpeech} runs once when it is heard.
+     * If the microphone cannot be opened the callback runs right away, so the
+     * caller falls back to starting the recognizer unconditionally.
+     */
+    synchronized void arm(Runnable onSpeech) {
+        Thread previous = audioThread;
+        disarm();
+        armed = true;
+        int armedGeneration = ++generation;
+        audioThread = new Thread(() -> runAudioLoop(previous, onSpeech, armedGeneration), "VocalFlow-Vad");
+        audioThread.start();
+    }
+
+    synchronized void disarm() {
+        armed = false;
+        generation++;
+        audioThread = null;
+    }
+
+    private void runAudioLoop(Thread previous, Runnable onSpeech, int armedGeneration) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        if (previous != null) {
+            try {
+                // Until the last loop has released the microphone and stopped using the detector
+                previous.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!armed || generation != armedGeneration) {
+            return;
+        }
+        detector.reset();
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+            AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record;
+        try {
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                Math.max(minBuffer, FRAME_LENGTH * 2 * 10));
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.e(TAG, "Cannot open microphone, not gating: " + e.getMessage());
+            fire(onSpeech, armedGeneration);
+            return;
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "AudioRecord failed to initialize, not gating");
+            record.release();
+            fire(onSpeech, armedGeneration);
+            return;
+        }
+
+        AcousticEchoCanceler echoCanceler = null;
+        if (AcousticEchoCanceler.isAvailable()) {
+            echoCanceler = AcousticEchoCanceler.create(record.getAudioSessionId());
+            if (echoCanceler != null) {
+                echoCanceler.setEnabled(true);
+            }
+        }
+
+        short[] frame = new short[FRAME_LENGTH];
+        boolean heardSpeech = false;
+        try {
+            record.startRecording();
+            while (armed && generation == armedGeneration) {
+                int read = record.read(frame, 0, FRAME_LENGTH);
+                if (read < 0) {
+                    Log.e(TAG, "AudioRecord read failed: " + read);
+                    heardSpeech = true;
+                    break;
+                }
+                if (detector.process(frame, read) == VoiceActivityDetector.State.SPEECH) {
+                    Log.d(TAG, "Speech detected at " + detector.getRmsDb() + " dBFS");
+                    heardSpeech = true;
+                    break;
+                }
+            }
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Audio capture failed, not gating: " + e.getMessage());
+            heardSpeech = true;
+        } finally {
+            try {
+                record.stop();
+            } catch (IllegalStateException e) {
+                // Never started
+            }
+            record.release();
+            if (echoCanceler != null) {
+                echoCanceler.release();
+            }
+        }
+        if (heardSpeech) {
+            fire(onSpeech, armedGeneration);
+        }
+    }
+
+    private void fire(Runnable onSpeech, int armedGeneration) {
+        mainHandler.post(() -> {
+            // A disarm or re-arm that raced with detection wins
+            if (armed && generation == armedGeneration) {
+                armed = false;
+                onSpeech.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.vocalflow.sdk.speech;
+
+/**
+ * Something that listens for the wake word.
+ *
+ * {@link AudioWakeWordEngine} spots an enrolled keyword directly in the
+ * microphone stream; {@link WakeWordDetector} runs the platform speech
+ * recognizer in a loop and is used when no keyword has been enrolled.
+ * Listener callbacks are delivered on the main thread.
+ */
+public interface WakeWordEngine {
+
+    interface WakeWordListener {
+        void onWakeWordDetected();
+        void onError(int error);
+    }
+
+    void setWakeWordListener(WakeWordListener listener);
+
+    void startDetection();
+
+    /**
+     * Stops listening and releases the microphone, so a recognizer can use it.
+     */
+    void stopDetection();
+
+    void destroy();
+}
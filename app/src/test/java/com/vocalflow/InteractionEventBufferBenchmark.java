@@ -0,0 +1,97 @@
+package com.vocalflow;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM microbenchmark comparing {@link InteractionEventBuffer} with the
+ * ArrayList the tracker used before, which evicted with {@code remove(0)}.
+ *
+ * The load is sustained clicks and text changes across a few screens, with a
+ * snapshot taken every so often as {@code tryRelayIntent} does. Each variant is
+ * warmed up before being timed. Besides time per event it reports bytes
+ * allocated per event, which is what the ring buffer is for: on HotSpot a short
+ * list and its garbage are nearly free, on ART the collector is not. Run it with
+ * {@code main} on an OpenJDK JVM; it needs nothing but the JDK and the classes
+ * it measures.
+ */
+public class InteractionEventBufferBenchmark {
+    private static final int CAPACITY = 100;
+    private static final int EVENTS = 2_000_000;
+    private static final int SNAPSHOT_EVERY = 1000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static final String[] SCREENS = {
+        "MainActivity", "BillPayActivity", "PaymentMethodsActivity", "PaymentProcessingActivity"
+    };
+    private static final String[] RESOURCES = {
+        "com.vocalflow:id/payButton", "com.vocalflow:id/amountInput",
+        "com.vocalflow:id/billTypeSpinner", "com.vocalflow:id/confirmButton"
+    };
+
+    // Keeps the JIT from discarding the work
+    private static long sink;
+
+    public static void main(String[] args) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runList();
+            runRing();
+        }
+        long listNanos = 0;
+        long ringNanos = 0;
+        long listBytes = 0;
+        long ringBytes = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long before = allocatedBytes();
+            listNanos += runList();
+            long between = allocatedBytes();
+            ringNanos += runRing();
+            listBytes += between - before;
+            ringBytes += allocatedBytes() - between;
+        }
+        int measured = MEASURED_ROUNDS * EVENTS;
+        System.out.printf("ArrayList + remove(0):  %.1f ns/event, %.1f bytes/event%n",
+            (double) listNanos / measured, (double) listBytes / measured);
+        System.out.printf("InteractionEventBuffer: %.1f ns/event, %.1f bytes/event%n",
+            (double) ringNanos / measured, (double) ringBytes / measured);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long runList() {
+        List<InteractionEvent> events = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            boolean click = (i & 3) != 1;
+            events.add(new InteractionEvent(i, i & 7, RESOURCES[i & 3], SCREENS[(i >> 4) & 3],
+                (click ? ActionType.CLICK : ActionType.INPUT).getWireName(), click ? null : "42.00"));
+            if (events.size() > CAPACITY) {
+                events.remove(0);
+            }
+            if (i % SNAPSHOT_EVERY == 0) {
+                sink += new ArrayList<>(events).size();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runRing() {
+        InteractionEventBuffer buffer = new InteractionEventBuffer(CAPACITY);
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            boolean click = (i & 3) != 1;
+            buffer.add(i, i & 7, RESOURCES[i & 3], SCREENS[(i >> 4) & 3],
+                click ? ActionType.CLICK : ActionType.INPUT, click ? null : "42.00");
+            if (i % SNAPSHOT_EVERY == 0) {
+                sink += buffer.snapshot().size();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}